@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Striped locks guarding the build context of the current project when storing a toolchain, so that the
+ * executions for different projects of a parallel build do not contend on a single lock.
+ *
+ * @since 3.3.1
+ */
+public final class ProjectLocks {
+
+    private static final Object[] LOCKS = new Object[64];
+
+    static {
+        for (int i = 0; i < LOCKS.length; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    private ProjectLocks() {}
+
+    /**
+     * Returns the lock for the current project of the given session.
+     */
+    public static Object get(MavenSession session) {
+        MavenProject project = session.getCurrentProject();
+        String id = project != null ? project.getId() : "";
+        return LOCKS[Math.floorMod(id.hashCode(), LOCKS.length)];
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.Restriction;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.toolchain.ToolchainPrivate;
+
+import static org.apache.maven.plugins.toolchain.ToolchainRequirements.VERSION;
+
+/**
+ * An index of toolchains by provided values, so that the first toolchain matching some requirements can be found
+ * without matching each toolchain: versions are sorted so that a version range is resolved using a binary search,
+ * and the other values are indexed by value.
+ *
+ * @param <T> the type of toolchain
+ * @since 3.3.1
+ */
+public final class ToolchainIndex<T extends ToolchainPrivate> {
+
+    private final List<T> toolchains;
+    private final Set<String> listKeys;
+    /** the provided versions, sorted */
+    private final ArtifactVersion[] versions;
+    /** the position of the toolchain providing each version */
+    private final int[] positions;
+    /** the positions of the toolchains providing each value of each property */
+    private final Map<String, Map<String, BitSet>> values = new HashMap<>();
+
+    /**
+     * Index the given toolchains.
+     *
+     * @param toolchains the toolchains, in order of preference
+     * @param listKeys the properties which provide comma separated lists
+     */
+    public ToolchainIndex(List<T> toolchains, Set<String> listKeys) {
+        this.toolchains = Collections.unmodifiableList(new ArrayList<>(toolchains));
+        this.listKeys = listKeys;
+        List<Object[]> sorted = new ArrayList<>();
+        for (int i = 0; i < toolchains.size(); i++) {
+            for (String key : toolchains.get(i).getModel().getProvides().stringPropertyNames()) {
+                String value = toolchains.get(i).getModel().getProvides().getProperty(key);
+                if (VERSION.equals(key)) {
+                    sorted.add(new Object[] {new DefaultArtifactVersion(value), i});
+                } else if (listKeys.contains(key)) {
+                    for (String item : value.split(",")) {
+                        index(key, item, i);
+                    }
+                } else {
+                    index(key, value.toLowerCase(Locale.ROOT), i);
+                }
+            }
+        }
+        sorted.sort(Comparator.comparing(o -> (ArtifactVersion) o[0]));
+        versions = sorted.stream().map(o -> (ArtifactVersion) o[0]).toArray(ArtifactVersion[]::new);
+        positions = sorted.stream().mapToInt(o -> (Integer) o[1]).toArray();
+    }
+
+    /**
+     * Returns the index of the given toolchains, which is stored in the session so that it can be reused by
+     * later executions, as long as the toolchains are created from the same models. Executions splitting
+     * different properties into lists use different indexes.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends ToolchainPrivate> ToolchainIndex<T> get(
+            MavenSession session, String type, T[] toolchains, Set<String> listKeys) {
+        String key = ToolchainIndex.class.getName() + ":" + type + ":" + new TreeSet<>(listKeys);
+        Object data = session.getRepositorySession().getData().get(key);
+        if (data instanceof ToolchainIndex && ((ToolchainIndex<?>) data).isIndexOf(toolchains)) {
+            // the toolchains are new instances for each execution
+            return ((ToolchainIndex<T>) data).withToolchains(toolchains);
+        }
+        ToolchainIndex<T> index = new ToolchainIndex<>(Arrays.asList(toolchains), listKeys);
+        session.getRepositorySession().getData().set(key, index);
+        return index;
+    }
+
+    private ToolchainIndex(ToolchainIndex<?> index, List<T> toolchains) {
+        this.toolchains = toolchains;
+        this.listKeys = index.listKeys;
+        this.versions = index.versions;
+        this.positions = index.positions;
+        this.values.putAll(index.values);
+    }
+
+    private ToolchainIndex<T> withToolchains(T[] toolchains) {
+        return new ToolchainIndex<>(this, Collections.unmodifiableList(Arrays.asList(toolchains)));
+    }
+
+    private boolean isIndexOf(ToolchainPrivate[] tcs) {
+        if (tcs.length != toolchains.size()) {
+            return false;
+        }
+        for (int i = 0; i < tcs.length; i++) {
+            if (tcs[i].getModel() != toolchains.get(i).getModel()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void index(String key, String value, int position) {
+        values.computeIfAbsent(key, k -> new HashMap<>())
+                .computeIfAbsent(value, v -> new BitSet())
+                .set(position);
+    }
+
+    /**
+     * Returns the first toolchain matching the given requirements.
+     */
+    public Optional<T> findFirst(ToolchainRequirements requirements) {
+        BitSet candidates = new BitSet();
+        candidates.set(0, toolchains.size());
+        for (Map.Entry<String, String> req : requirements.getRequirements().entrySet()) {
+            if (candidates.isEmpty()) {
+                break;
+            }
+            String key = req.getKey();
+            if (VERSION.equals(key)) {
+                candidates.and(getVersionMatches(requirements.getVersionRange()));
+            } else {
+                String value = listKeys.contains(key) ? req.getValue() : req.getValue().toLowerCase(Locale.ROOT);
+                candidates.and(values.getOrDefault(key, Collections.emptyMap()).getOrDefault(value, new BitSet()));
+            }
+        }
+        int first = candidates.nextSetBit(0);
+        return first >= 0 ? Optional.of(toolchains.get(first)) : Optional.empty();
+    }
+
+    private BitSet getVersionMatches(VersionRange range) {
+        BitSet matches = new BitSet();
+        if (range == null) {
+            return matches;
+        }
+        if (range.hasRestrictions()) {
+            for (Restriction r : range.getRestrictions()) {
+                int from = r.getLowerBound() == null
+                        ? 0
+                        : r.isLowerBoundInclusive() ? lowerBound(r.getLowerBound()) : upperBound(r.getLowerBound());
+                int to = r.getUpperBound() == null
+                        ? versions.length
+                        : r.isUpperBoundInclusive() ? upperBound(r.getUpperBound()) : lowerBound(r.getUpperBound());
+                set(matches, from, to);
+            }
+        } else {
+            ArtifactVersion version = range.getRecommendedVersion();
+            set(matches, lowerBound(version), upperBound(version));
+        }
+        return matches;
+    }
+
+    private void set(BitSet matches, int from, int to) {
+        for (int i = from; i < to; i++) {
+            matches.set(positions[i]);
+        }
+    }
+
+    /**
+     * Returns the index of the first version which is greater than or equal to the given version.
+     */
+    private int lowerBound(ArtifactVersion version) {
+        int low = 0;
+        int high = versions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (versions[mid].compareTo(version) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first version which is greater than the given version.
+     */
+    private int upperBound(ArtifactVersion version) {
+        int low = 0;
+        int high = versions.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (versions[mid].compareTo(version) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
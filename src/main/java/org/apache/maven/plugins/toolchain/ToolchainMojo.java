@@ -19,8 +19,10 @@
 package org.apache.maven.plugins.toolchain;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
@@ -33,6 +35,7 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.toolchain.MisconfiguredToolchainException;
 import org.apache.maven.toolchain.ToolchainManagerPrivate;
 import org.apache.maven.toolchain.ToolchainPrivate;
+import org.apache.maven.toolchain.java.JavaToolchain;
 
 /**
  * Check that toolchains requirements are met by currently configured toolchains in {@code toolchains.xml} and
@@ -46,7 +49,6 @@ import org.apache.maven.toolchain.ToolchainPrivate;
         configurator = "toolchains-requirement-configurator",
         threadSafe = true)
 public class ToolchainMojo extends AbstractMojo {
-    private static final Object LOCK = new Object();
 
     /**
      */
@@ -132,24 +134,45 @@ public class ToolchainMojo extends AbstractMojo {
         try {
             ToolchainPrivate[] tcs = getToolchains(type);
 
-            for (ToolchainPrivate tc : tcs) {
-                if (!type.equals(tc.getType())) {
-                    // useful because of MNG-5716
-                    continue;
-                }
+            ToolchainPrivate found = null;
+            boolean indexed = false;
+            if (Stream.of(tcs).allMatch(tc -> type.equals(tc.getType()) && tc instanceof JavaToolchain)) {
+                typeFound = tcs.length;
+                found = ToolchainIndex.get(session, type, tcs, Collections.emptySet())
+                        .findFirst(new ToolchainRequirements(params, Collections.emptySet()))
+                        .orElse(null);
+                // the index mirrors the matching rules of the JDK toolchain factory, unless they are overridden:
+                // a toolchain found by the index is checked, and the toolchains are scanned when none is found
+                indexed = found != null && found.matchesRequirements(params);
+            }
 
-                typeFound++;
+            if (!indexed) {
+                typeFound = 0;
+                found = null;
+                for (ToolchainPrivate tc : tcs) {
+                    if (!type.equals(tc.getType())) {
+                        // useful because of MNG-5716
+                        continue;
+                    }
 
-                if (tc.matchesRequirements(params)) {
-                    getLog().info("Found matching toolchain for type " + type + ": " + tc);
+                    typeFound++;
 
-                    // store matching toolchain to build context
-                    synchronized (LOCK) {
-                        toolchainManagerPrivate.storeToolchainToBuildContext(tc, session);
+                    if (tc.matchesRequirements(params)) {
+                        found = tc;
+                        break;
                     }
+                }
+            }
+
+            if (found != null) {
+                getLog().info("Found matching toolchain for type " + type + ": " + found);
 
-                    return true;
+                // store matching toolchain to build context
+                synchronized (ProjectLocks.get(session)) {
+                    toolchainManagerPrivate.storeToolchainToBuildContext(found, session);
                 }
+
+                return true;
             }
         } catch (MisconfiguredToolchainException ex) {
             throw new MojoExecutionException("Misconfigured toolchains.", ex);
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.toolchain.model.ToolchainModel;
+
+/**
+ * Toolchain requirements, parsed once so that they can be matched against many toolchains.
+ * <p>
+ * The {@code version} requirement is a version range, while other requirements must be equal to the provided
+ * value, ignoring case. The value of a list property is a comma separated list, one of which must be equal to
+ * the requirement.
+ *
+ * @since 3.3.1
+ */
+public final class ToolchainRequirements {
+
+    static final String VERSION = "version";
+
+    private final Map<String, String> requirements;
+    private final Set<String> listKeys;
+    private final VersionRange versionRange;
+
+    /**
+     * Parse the given requirements.
+     *
+     * @param requirements the required values of the toolchain properties
+     * @param listKeys the properties which provide comma separated lists
+     */
+    public ToolchainRequirements(Map<String, String> requirements, Set<String> listKeys) {
+        this.requirements = Collections.unmodifiableMap(new LinkedHashMap<>(requirements));
+        this.listKeys = listKeys;
+        VersionRange range = null;
+        String version = requirements.get(VERSION);
+        if (version != null) {
+            try {
+                range = VersionRange.createFromVersionSpec(version);
+            } catch (InvalidVersionSpecificationException e) {
+                // no toolchain will match
+            }
+        }
+        this.versionRange = range;
+    }
+
+    public Map<String, String> getRequirements() {
+        return requirements;
+    }
+
+    Set<String> getListKeys() {
+        return listKeys;
+    }
+
+    /**
+     * Returns the version range, or {@code null} if the version requirement is not a valid range.
+     */
+    VersionRange getVersionRange() {
+        return versionRange;
+    }
+
+    public boolean matches(ToolchainModel model) {
+        return getMismatch(model) == null;
+    }
+
+    /**
+     * Returns the first required property which is missing or does not match, or {@code null} if the given
+     * toolchain matches the requirements.
+     */
+    public String getMismatch(ToolchainModel model) {
+        for (Map.Entry<String, String> req : requirements.entrySet()) {
+            String value = model.getProvides().getProperty(req.getKey());
+            if (value == null || !matches(req.getKey(), req.getValue(), value)) {
+                return req.getKey();
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(String key, String requirement, String value) {
+        if (VERSION.equals(key)) {
+            if (versionRange == null) {
+                return false;
+            }
+            DefaultArtifactVersion version = new DefaultArtifactVersion(value);
+            return versionRange.hasRestrictions()
+                    ? versionRange.containsVersion(version)
+                    : versionRange.getRecommendedVersion().compareTo(version) == 0;
+        } else if (listKeys.contains(key)) {
+            for (String item : value.split(",")) {
+                if (item.equals(requirement)) {
+                    return true;
+                }
+            }
+            return false;
+        } else {
+            return value.equalsIgnoreCase(requirement);
+        }
+    }
+}
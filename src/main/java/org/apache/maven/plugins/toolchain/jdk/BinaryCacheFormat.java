@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.maven.plugins.toolchain.jdk.DiscoveryCache.Entry;
+import org.apache.maven.toolchain.model.ToolchainModel;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.JDK_HOME;
+
+/**
+ * Compact binary format of the discovery cache.
+ * <p>
+ * The file starts with the state of the XML file it has been written along with, followed by an index of the JDK
+ * homes and the offsets of their entries, followed by the entries themselves. The file is only used if the XML
+ * file is still in that state, as the XML file may have been written by a version of the plugin which does not
+ * support the binary format, or deleted to reset the cache. Only the index is decoded when the file is read, each
+ * entry being decoded when it is first accessed. The file is memory-mapped, except on Windows where a mapped file
+ * can not be replaced.
+ * <pre>
+ * file  := MAGIC xmlLastModified xmlSize xmlFileKey count (home offset){count} entry{count}
+ * entry := fingerprint type provides (key value){provides}
+ * </pre>
+ * Strings are stored as their length followed by their UTF-8 bytes, numbers as 4-byte integers, except the
+ * modification time and the size of the XML file which are stored as 8-byte integers.
+ *
+ * @since 3.3.1
+ */
+final class BinaryCacheFormat {
+
+    private static final int MAGIC = 0x4A544332; // JTC2
+
+    private BinaryCacheFormat() {}
+
+    /**
+     * Encode the given entries.
+     *
+     * @param entries the entries
+     * @param xml the attributes of the XML file written along with the binary file
+     */
+    static byte[] encode(Map<Path, Entry> entries, BasicFileAttributes xml) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(data);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerOut = new DataOutputStream(header);
+        Map<Path, Entry> valid = new HashMap<>(entries);
+        valid.values().removeIf(e -> e.getModel() == null);
+        headerOut.writeInt(MAGIC);
+        headerOut.writeLong(xml.lastModifiedTime().toMillis());
+        headerOut.writeLong(xml.size());
+        writeString(headerOut, String.valueOf(xml.fileKey()));
+        headerOut.writeInt(valid.size());
+        for (Map.Entry<Path, Entry> e : valid.entrySet()) {
+            ToolchainModel model = e.getValue().getModel();
+            writeString(headerOut, e.getKey().toString());
+            headerOut.writeInt(dataOut.size());
+            String fingerprint = e.getValue().getFingerprint();
+            writeString(dataOut, fingerprint != null ? fingerprint : "");
+            writeString(dataOut, model.getType());
+            dataOut.writeInt(model.getProvides().size());
+            for (String key : model.getProvides().stringPropertyNames()) {
+                writeString(dataOut, key);
+                writeString(dataOut, model.getProvides().getProperty(key));
+            }
+        }
+        data.writeTo(headerOut);
+        headerOut.flush();
+        return header.toByteArray();
+    }
+
+    /**
+     * Read the index of the given file.
+     *
+     * @param file the binary file
+     * @param xml the current attributes of the XML file
+     * @return the lazily decoded entries, or {@code null} if the XML file has been modified since the binary file
+     *         has been written
+     */
+    static Map<Path, Entry> read(Path file, BasicFileAttributes xml) throws IOException {
+        ByteBuffer buffer;
+        if (System.getProperty("os.name").toLowerCase(Locale.ROOT).startsWith("win")) {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        } else {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Invalid toolchains cache " + file);
+            }
+            if (buffer.getLong() != xml.lastModifiedTime().toMillis()
+                    || buffer.getLong() != xml.size()
+                    || !readString(buffer).equals(String.valueOf(xml.fileKey()))) {
+                return null;
+            }
+            int count = buffer.getInt();
+            Map<Path, Integer> offsets = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                offsets.put(Paths.get(readString(buffer)), buffer.getInt());
+            }
+            ByteBuffer data = buffer.slice();
+            Map<Path, Entry> entries = new HashMap<>();
+            offsets.forEach((jdk, offset) -> entries.put(jdk, new Entry(jdk, data, offset)));
+            return entries;
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid toolchains cache " + file + ": " + e, e);
+        }
+    }
+
+    /**
+     * Decode the entry at the given offset.
+     */
+    static Entry decode(Path jdk, ByteBuffer data, int offset) {
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(offset);
+        String fingerprint = readString(buffer);
+        ToolchainModel model = new ToolchainModel();
+        model.setType(readString(buffer));
+        int provides = buffer.getInt();
+        for (int i = 0; i < provides; i++) {
+            model.addProvide(readString(buffer), readString(buffer));
+        }
+        Xpp3Dom configuration = new Xpp3Dom("configuration");
+        Xpp3Dom jdkHome = new Xpp3Dom(JDK_HOME);
+        jdkHome.setValue(jdk.toString());
+        configuration.addChild(jdkHome);
+        model.setConfiguration(configuration);
+        return new Entry(model, fingerprint.isEmpty() ? null : fingerprint);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        // a corrupted length must not allocate a huge array
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,680 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.maven.toolchain.model.PersistedToolchains;
+import org.apache.maven.toolchain.model.ToolchainModel;
+import org.apache.maven.toolchain.model.io.xpp3.MavenToolchainsXpp3Reader;
+import org.apache.maven.toolchain.model.io.xpp3.MavenToolchainsXpp3Writer;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.FINGERPRINT;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.JDK_HOME;
+
+/**
+ * Persistent cache of the discovered JDK toolchains.
+ * <p>
+ * The toolchains are stored using the {@code toolchains.xml} format, and optionally using a compact binary
+ * format which is faster to load, while the rejected directories and the content of the install directories
+ * are stored in a properties file. When the cache is stored, both files
+ * are merged with their current content on disk and replaced atomically, so that concurrent builds add to
+ * the cache instead of overwriting each other's entries.
+ *
+ * @since 3.3.1
+ */
+final class DiscoveryCache {
+
+    private static final String INVALID_PREFIX = "invalid.";
+    private static final String INSTALL_DIR_PREFIX = "installDir.";
+
+    private static final long LOCK_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Path cacheFile;
+    private final Path indexFile;
+    private final Path binaryFile;
+    private final Path lockFile;
+
+    // all the locks are acquired through the same channel, as closing a channel may release the locks acquired
+    // through other channels on the same file
+    private final Object lockChannelGuard = new Object();
+    private FileChannel lockChannel;
+    private int lockCount;
+
+    private final Map<Path, Entry> toolchains = new ConcurrentHashMap<>();
+    private final Map<Path, String> invalids = new ConcurrentHashMap<>();
+    private final Map<Path, InstallDir> installDirs = new ConcurrentHashMap<>();
+
+    // keys modified since the cache has been loaded or stored
+    private final Set<Path> modifiedToolchains = ConcurrentHashMap.newKeySet();
+    private final Set<Path> modifiedInvalids = ConcurrentHashMap.newKeySet();
+    private final Set<Path> modifiedInstallDirs = ConcurrentHashMap.newKeySet();
+
+    // state of the cache file when it has been read or written
+    private volatile List<Object> lastModified;
+
+    /**
+     * Creates a cache.
+     *
+     * @param cacheFile the XML file
+     * @param indexFile the properties file
+     * @param binaryFile the binary file, or {@code null} to only use the XML file
+     */
+    DiscoveryCache(Path cacheFile, Path indexFile, Path binaryFile) {
+        this.cacheFile = cacheFile;
+        this.indexFile = indexFile;
+        this.binaryFile = binaryFile;
+        this.lockFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".lock");
+    }
+
+    /**
+     * Load the cache from disk, removing the entries of JDKs which do not exist anymore.
+     */
+    synchronized void load() {
+        deleteStaleTempFiles();
+        Map<Path, Entry> tcs = new HashMap<>();
+        Map<Path, String> invs = new HashMap<>();
+        Map<Path, InstallDir> dirs = new HashMap<>();
+        read(tcs, invs, dirs);
+        tcs.forEach((jdk, entry) -> {
+            // If the bin/javac executable is not available anymore, remove this TC
+            if (ToolchainDiscoverer.hasJavaC(jdk)) {
+                toolchains.put(jdk, entry);
+            } else {
+                modifiedToolchains.add(jdk);
+            }
+        });
+        invs.forEach((jdk, fingerprint) -> {
+            // forget directories which do not exist anymore
+            if (Files.isDirectory(jdk)) {
+                invalids.put(jdk, fingerprint);
+            } else {
+                modifiedInvalids.add(jdk);
+            }
+        });
+        installDirs.putAll(dirs);
+    }
+
+    /**
+     * Delete the temporary files left by a process which has exited while writing the cache, such as a build
+     * ending while the cache is written in background. The temporary files which are older than the lock timeout
+     * can not be written anymore.
+     */
+    private void deleteStaleTempFiles() {
+        long stale = System.currentTimeMillis() - LOCK_TIMEOUT;
+        Set<String> prefixes = Stream.of(cacheFile, indexFile, binaryFile)
+                .filter(Objects::nonNull)
+                .map(file -> file.getFileName() + ".")
+                .collect(Collectors.toSet());
+        DirectoryStream.Filter<Path> filter = file -> {
+            String name = file.getFileName().toString();
+            return name.endsWith(".tmp") && prefixes.stream().anyMatch(name::startsWith);
+        };
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheFile.getParent(), filter)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() < stale) {
+                    log.debug("Deleting stale temporary file " + file);
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            // the directory does not exist yet, or the files will be deleted next time
+        }
+    }
+
+    /**
+     * Returns a copy of the cached model for the given JDK, or {@code null} if there's none
+     * or if the JDK has been modified since it has been cached.
+     */
+    ToolchainModel getToolchain(Path jdk, String fingerprint) {
+        Entry entry = toolchains.get(jdk);
+        if (entry == null) {
+            return null;
+        }
+        if (!fingerprint.equals(entry.getFingerprint()) || entry.getModel() == null) {
+            log.debug("JDK toolchain at " + jdk + " has been modified since it has been cached");
+            return null;
+        }
+        return entry.getModel().clone();
+    }
+
+    /**
+     * Returns copies of all the cached models, without checking whether the JDKs have been modified since they
+     * have been cached.
+     */
+    Map<Path, ToolchainModel> getToolchains() {
+        Map<Path, ToolchainModel> models = new HashMap<>();
+        toolchains.forEach((jdk, entry) -> {
+            ToolchainModel model = entry.getModel();
+            if (model != null) {
+                models.put(jdk, model.clone());
+            }
+        });
+        return models;
+    }
+
+    void putToolchain(Path jdk, String fingerprint, ToolchainModel model) {
+        toolchains.put(jdk, new Entry(model.clone(), fingerprint));
+        invalids.remove(jdk);
+        modifiedToolchains.add(jdk);
+        modifiedInvalids.add(jdk);
+    }
+
+    /**
+     * Checks if the given directory has been rejected and has not been modified since.
+     */
+    boolean isInvalid(Path jdk, String fingerprint) {
+        return fingerprint.equals(invalids.get(jdk));
+    }
+
+    void putInvalid(Path jdk, String fingerprint) {
+        invalids.put(jdk, fingerprint);
+        toolchains.remove(jdk);
+        modifiedInvalids.add(jdk);
+        modifiedToolchains.add(jdk);
+    }
+
+    InstallDir getInstallDir(Path dir) {
+        return installDirs.get(dir);
+    }
+
+    void putInstallDir(Path dir, InstallDir installDir) {
+        installDirs.put(dir, installDir);
+        modifiedInstallDirs.add(dir);
+    }
+
+    void removeInstallDir(Path dir) {
+        if (installDirs.remove(dir) != null) {
+            modifiedInstallDirs.add(dir);
+        }
+    }
+
+    /**
+     * Lock the given JDK across processes, so that it is probed by a single process at a time. The JDK is locked
+     * using a region of the lock file of the cache, derived from its path, so that no file is created per JDK.
+     * The returned handle must be closed to release the lock. If the lock could not be acquired in time,
+     * the handle does not hold any lock and the JDK will be probed concurrently.
+     */
+    Closeable lockToolchain(Path jdk, long timeoutMillis) throws IOException, InterruptedException {
+        // the first byte is used to lock the whole cache
+        long position = 1 + (jdk.toString().hashCode() & 0xFFFFFFFFL);
+        FileLock lock = lock(position, timeoutMillis);
+        if (lock == null) {
+            log.debug("Unable to lock " + lockFile + " to probe " + jdk);
+            return () -> {};
+        }
+        return () -> unlock(lock);
+    }
+
+    /**
+     * Add the entries which have been written to disk by other processes since the cache has been
+     * loaded or stored.
+     */
+    synchronized void refresh() {
+        if (!Objects.equals(lastModified, getLastModified())) {
+            Map<Path, Entry> tcs = new HashMap<>();
+            Map<Path, String> invs = new HashMap<>();
+            Map<Path, InstallDir> dirs = new HashMap<>();
+            read(tcs, invs, dirs);
+            adopt(toolchains, modifiedToolchains, tcs);
+            adopt(invalids, modifiedInvalids, invs);
+            adopt(installDirs, modifiedInstallDirs, dirs);
+        }
+    }
+
+    /**
+     * Store the modifications to disk. The files are locked, merged with their content on disk, written to
+     * temporary files and moved in place, so that readers never see a partially written file. The entries
+     * written by other processes are also added to this cache.
+     */
+    synchronized void store() {
+        if (modifiedToolchains.isEmpty() && modifiedInvalids.isEmpty() && modifiedInstallDirs.isEmpty()) {
+            return;
+        }
+        try {
+            FileLock lock = lock(0, LOCK_TIMEOUT);
+            if (lock == null) {
+                log.debug("Unable to lock " + lockFile + ", the toolchains cache will be stored without locking");
+            }
+            try {
+                Map<Path, Entry> tcs = new HashMap<>();
+                Map<Path, String> invs = new HashMap<>();
+                Map<Path, InstallDir> dirs = new HashMap<>();
+                read(tcs, invs, dirs);
+                merge(toolchains, modifiedToolchains, tcs);
+                merge(invalids, modifiedInvalids, invs);
+                merge(installDirs, modifiedInstallDirs, dirs);
+                write(tcs, invs, dirs);
+            } finally {
+                if (lock != null) {
+                    unlock(lock);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Error writing toolchains cache: " + e, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Merge the modified entries into the entries read from disk and update the entries in memory
+     * with the ones which have been modified by other processes.
+     */
+    private static <V> void merge(Map<Path, V> memory, Set<Path> modified, Map<Path, V> disk) {
+        for (Path key : modified.toArray(new Path[0])) {
+            modified.remove(key);
+            V value = memory.get(key);
+            if (value != null) {
+                disk.put(key, value);
+            } else {
+                disk.remove(key);
+            }
+        }
+        adopt(memory, modified, disk);
+        memory.keySet().removeIf(key -> !disk.containsKey(key) && !modified.contains(key));
+    }
+
+    private static <V> void adopt(Map<Path, V> memory, Set<Path> modified, Map<Path, V> disk) {
+        disk.forEach((key, value) -> {
+            if (!modified.contains(key)) {
+                memory.put(key, value);
+            }
+        });
+    }
+
+    /**
+     * Read the binary file, if it has been written along with the current XML file.
+     */
+    private void readBinary(Map<Path, Entry> tcs) {
+        if (binaryFile == null || !Files.isRegularFile(binaryFile) || !Files.isRegularFile(cacheFile)) {
+            return;
+        }
+        try {
+            Map<Path, Entry> entries =
+                    BinaryCacheFormat.read(binaryFile, Files.readAttributes(cacheFile, BasicFileAttributes.class));
+            if (entries != null) {
+                tcs.putAll(entries);
+            }
+        } catch (IOException e) {
+            log.debug("Error reading binary toolchains cache: " + e, e);
+        }
+    }
+
+    /**
+     * Returns the modification time and file key of the cache file, the latter being changed
+     * by each atomic write on file systems which support it.
+     */
+    private List<Object> getLastModified() {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(cacheFile, BasicFileAttributes.class);
+            return Arrays.asList(attrs.lastModifiedTime(), attrs.fileKey());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void read(Map<Path, Entry> tcs, Map<Path, String> invs, Map<Path, InstallDir> dirs) {
+        lastModified = getLastModified();
+        readBinary(tcs);
+        try {
+            if (tcs.isEmpty() && Files.isRegularFile(cacheFile)) {
+                try (Reader r = Files.newBufferedReader(cacheFile)) {
+                    PersistedToolchains pt = new MavenToolchainsXpp3Reader().read(r, false);
+                    for (ToolchainModel tc : pt.getToolchains()) {
+                        Xpp3Dom dom = (Xpp3Dom) tc.getConfiguration();
+                        Xpp3Dom home = dom != null ? dom.getChild(JDK_HOME) : null;
+                        if (home == null || home.getValue() == null) {
+                            continue;
+                        }
+                        String fingerprint = null;
+                        for (int i = dom.getChildCount() - 1; i >= 0; i--) {
+                            if (FINGERPRINT.equals(dom.getChild(i).getName())) {
+                                fingerprint = dom.getChild(i).getValue();
+                                dom.removeChild(i);
+                            }
+                        }
+                        tcs.put(Paths.get(home.getValue()), new Entry(tc, fingerprint));
+                    }
+                }
+            }
+        } catch (IOException | XmlPullParserException e) {
+            log.debug("Error reading toolchains cache: " + e, e);
+        }
+        try {
+            if (Files.isRegularFile(indexFile)) {
+                Properties index = new Properties();
+                try (Reader r = Files.newBufferedReader(indexFile)) {
+                    index.load(r);
+                }
+                for (String key : index.stringPropertyNames()) {
+                    try {
+                        if (key.startsWith(INVALID_PREFIX)) {
+                            invs.put(Paths.get(key.substring(INVALID_PREFIX.length())), index.getProperty(key));
+                        } else if (key.startsWith(INSTALL_DIR_PREFIX)) {
+                            dirs.put(
+                                    Paths.get(key.substring(INSTALL_DIR_PREFIX.length())),
+                                    InstallDir.parse(index.getProperty(key)));
+                        }
+                    } catch (RuntimeException e) {
+                        log.debug("Ignoring invalid index entry " + key + ": " + e);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.debug("Error reading toolchains index: " + e, e);
+        }
+    }
+
+    private void write(Map<Path, Entry> tcs, Map<Path, String> invs, Map<Path, InstallDir> dirs)
+            throws IOException {
+        PersistedToolchains pt = new PersistedToolchains();
+        pt.setToolchains(tcs.entrySet().stream()
+                .filter(e -> e.getValue().getModel() != null)
+                .sorted(Map.Entry.comparingByKey())
+                .map(e -> {
+                    ToolchainModel model = e.getValue().getModel().clone();
+                    if (e.getValue().getFingerprint() != null) {
+                        Xpp3Dom dom = new Xpp3Dom(FINGERPRINT);
+                        dom.setValue(e.getValue().getFingerprint());
+                        ((Xpp3Dom) model.getConfiguration()).addChild(dom);
+                    }
+                    return model;
+                })
+                .collect(Collectors.toList()));
+        StringWriter xml = new StringWriter();
+        new MavenToolchainsXpp3Writer().write(xml, pt);
+        writeAtomically(cacheFile, xml.toString().getBytes(StandardCharsets.UTF_8));
+        if (binaryFile != null) {
+            writeAtomically(
+                    binaryFile,
+                    BinaryCacheFormat.encode(tcs, Files.readAttributes(cacheFile, BasicFileAttributes.class)));
+        }
+
+        Properties index = new Properties();
+        invs.forEach((k, v) -> index.setProperty(INVALID_PREFIX + k, v));
+        dirs.forEach((k, v) -> index.setProperty(INSTALL_DIR_PREFIX + k, v.toString()));
+        StringWriter props = new StringWriter();
+        index.store(props, "Discovered JDK toolchains index");
+        writeAtomically(indexFile, props.toString().getBytes(StandardCharsets.ISO_8859_1));
+        lastModified = getLastModified();
+    }
+
+    /**
+     * Write the given content to a temporary file which is moved in place, so that readers never see a partially
+     * written file. The file keeps its permissions, or gets the default permissions if it does not exist.
+     */
+    static void writeAtomically(Path file, byte[] content) throws IOException {
+        Path temp = createTempFile(file);
+        try {
+            Files.write(temp, content);
+            copyPermissions(file, temp);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Creates a temporary file next to the given file. Unlike {@link Files#createTempFile}, which restricts the
+     * permissions to the owner, the file is created with the default permissions.
+     */
+    private static Path createTempFile(Path file) throws IOException {
+        while (true) {
+            String suffix = Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp";
+            try {
+                return Files.createFile(file.resolveSibling(file.getFileName() + "." + suffix));
+            } catch (FileAlreadyExistsException e) {
+                // try another name
+            }
+        }
+    }
+
+    private static void copyPermissions(Path file, Path temp) throws IOException {
+        if (Files.getFileAttributeView(temp, PosixFileAttributeView.class) != null) {
+            Set<PosixFilePermission> permissions;
+            try {
+                permissions = Files.getPosixFilePermissions(file);
+            } catch (NoSuchFileException e) {
+                return;
+            }
+            Files.setPosixFilePermissions(temp, permissions);
+        }
+    }
+
+    /**
+     * Acquire an exclusive lock on a byte of the lock file, waiting at most the given time.
+     *
+     * @return the lock, or {@code null} if it could not be acquired in time
+     */
+    private FileLock lock(long position, long timeoutMillis) throws IOException, InterruptedException {
+        FileChannel channel = openLockChannel();
+        try {
+            FileLock lock = lock(channel, position, timeoutMillis);
+            if (lock != null) {
+                return lock;
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            closeLockChannel();
+            throw e;
+        }
+        closeLockChannel();
+        return null;
+    }
+
+    private void unlock(FileLock lock) throws IOException {
+        try {
+            lock.release();
+        } finally {
+            closeLockChannel();
+        }
+    }
+
+    /**
+     * Opens the channel of the lock file, or returns the channel already open. The channel is closed when all
+     * the locks acquired through it have been released.
+     */
+    private FileChannel openLockChannel() throws IOException {
+        synchronized (lockChannelGuard) {
+            if (lockChannel == null) {
+                Files.createDirectories(lockFile.getParent());
+                lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            lockCount++;
+            return lockChannel;
+        }
+    }
+
+    private void closeLockChannel() throws IOException {
+        synchronized (lockChannelGuard) {
+            if (--lockCount == 0) {
+                FileChannel channel = lockChannel;
+                lockChannel = null;
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Acquire an exclusive lock on a byte of the given channel, waiting at most the given time.
+     *
+     * @return the lock, or {@code null} if it could not be acquired in time
+     */
+    private static FileLock lock(FileChannel channel, long position, long timeoutMillis)
+            throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            try {
+                FileLock lock = channel.tryLock(position, 1, false);
+                if (lock != null) {
+                    return lock;
+                }
+            } catch (OverlappingFileLockException e) {
+                // the lock is held by another thread of this JVM
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return null;
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * A cached toolchain model, along with the fingerprint of the JDK when it has been probed.
+     * Entries read from the binary format are decoded on first access.
+     */
+    static final class Entry {
+        private final Path jdk;
+        private ByteBuffer data;
+        private int offset;
+        private ToolchainModel model;
+        private String fingerprint;
+
+        Entry(ToolchainModel model, String fingerprint) {
+            this.jdk = null;
+            this.model = model;
+            this.fingerprint = fingerprint;
+        }
+
+        Entry(Path jdk, ByteBuffer data, int offset) {
+            this.jdk = jdk;
+            this.data = data;
+            this.offset = offset;
+        }
+
+        /**
+         * Returns the model, or {@code null} if the entry could not be decoded.
+         */
+        synchronized ToolchainModel getModel() {
+            decode();
+            return model;
+        }
+
+        synchronized String getFingerprint() {
+            decode();
+            return fingerprint;
+        }
+
+        private void decode() {
+            if (data != null) {
+                try {
+                    Entry entry = BinaryCacheFormat.decode(jdk, data, offset);
+                    model = entry.model;
+                    fingerprint = entry.fingerprint;
+                } catch (RuntimeException e) {
+                    // corrupted entry, the JDK will be probed again
+                }
+                data = null;
+            }
+        }
+    }
+
+    /**
+     * The JDKs found in an install directory, used to avoid listing the directory if it has not been modified.
+     */
+    static final class InstallDir {
+        /**
+         * Minimum time between the modification of the directory and its scan for the result to be trusted,
+         * so that a JDK which was still being installed during the scan is eventually found.
+         */
+        private static final long SETTLE_TIME = TimeUnit.MINUTES.toMillis(5);
+
+        final long lastModified;
+        final long scanned;
+        final List<Path> jdks;
+
+        InstallDir(long lastModified, long scanned, List<Path> jdks) {
+            this.lastModified = lastModified;
+            this.scanned = scanned;
+            this.jdks = jdks;
+        }
+
+        boolean isSettled() {
+            return scanned - lastModified > SETTLE_TIME;
+        }
+
+        /**
+         * Checks if the JDKs found by the scan can be used instead of listing the directory, which has been
+         * modified at the given time.
+         */
+        boolean isUpToDate(long dirLastModified) {
+            return lastModified == dirLastModified && isSettled();
+        }
+
+        static InstallDir parse(String value) {
+            String[] parts = value.split(File.pathSeparator, -1);
+            List<Path> jdks = Stream.of(parts)
+                    .skip(2)
+                    .filter(p -> !p.isEmpty())
+                    .map(Paths::get)
+                    .collect(Collectors.toList());
+            return new InstallDir(Long.parseLong(parts[0]), Long.parseLong(parts[1]), jdks);
+        }
+
+        @Override
+        public String toString() {
+            return Stream.concat(Stream.of(lastModified, scanned), jdks.stream())
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(File.pathSeparator));
+        }
+    }
+}
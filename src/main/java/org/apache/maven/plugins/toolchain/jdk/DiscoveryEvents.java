@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.nio.file.Path;
+
+/**
+ * Java Flight Recorder events of the JDK discovery and selection.
+ * <p>
+ * This version does nothing, as the Flight Recorder API is not available on Java 8: the events are emitted by
+ * the Java 11 version of this class, in {@code src/main/java11}, which is used when running on Java 11 or later.
+ * Each {@code begin} method returns a handle which must be passed to the matching {@code end} method, or
+ * {@code null} if the event is not recorded.
+ *
+ * @since 3.3.1
+ */
+final class DiscoveryEvents {
+
+    private DiscoveryEvents() {}
+
+    static Object beginInstallDirScan() {
+        return null;
+    }
+
+    static void endInstallDirScan(Object event, Path dir, int jdks, boolean cached) {}
+
+    static Object beginProbe() {
+        return null;
+    }
+
+    static void endProbe(Object event, Path jdk, String outcome) {}
+
+    static Object beginCacheLoad() {
+        return null;
+    }
+
+    static void endCacheLoad(Object event, Path file) {}
+
+    static Object beginCacheStore() {
+        return null;
+    }
+
+    static void endCacheStore(Object event, Path file) {}
+
+    static Object beginSelection() {
+        return null;
+    }
+
+    static void endSelection(Object event, String requirements, String source, Path jdk) {}
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counters of the JDK discovery, accumulated during a build session. A discoverer reused across
+ * builds starts new metrics for each session, see
+ * {@link ToolchainDiscoverer#getMetrics(org.apache.maven.execution.MavenSession)}.
+ * <p>
+ * The time of a phase is the sum of the time spent in each of its occurrences: as JDKs are probed in parallel,
+ * the time of the {@value #PROBE} phase may exceed the wall time of the discovery. The {@value #SCAN} phase
+ * includes the {@value #CANONICALIZE} phase.
+ *
+ * @since 3.3.1
+ */
+final class DiscoveryMetrics {
+
+    /** listing the install directories */
+    static final String SCAN = "scan";
+    /** resolving the real path of the JDKs */
+    static final String CANONICALIZE = "canonicalize";
+    static final String CACHE_READ = "cacheRead";
+    static final String CACHE_WRITE = "cacheWrite";
+    /** reading the release file or forking the java executable of a JDK which is not cached */
+    static final String PROBE = "probe";
+
+    static final List<String> PHASES =
+            Collections.unmodifiableList(Arrays.asList(SCAN, CANONICALIZE, CACHE_READ, CACHE_WRITE, PROBE));
+
+    private final Map<String, LongAdder> nanos = new LinkedHashMap<>();
+    private final Map<String, LongAdder> counts = new LinkedHashMap<>();
+    private final LongAdder forks = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private Path slowestJdk;
+    private long slowestNanos;
+
+    DiscoveryMetrics() {
+        for (String phase : PHASES) {
+            nanos.put(phase, new LongAdder());
+            counts.put(phase, new LongAdder());
+        }
+    }
+
+    /**
+     * Records an occurrence of the given phase.
+     *
+     * @param phase the phase
+     * @param start the start of the phase, as returned by {@link System#nanoTime()}
+     */
+    void record(String phase, long start) {
+        nanos.get(phase).add(System.nanoTime() - start);
+        counts.get(phase).increment();
+    }
+
+    /**
+     * Records the probe of the given JDK.
+     *
+     * @param jdk the JDK
+     * @param start the start of the probe, as returned by {@link System#nanoTime()}
+     */
+    void recordProbe(Path jdk, long start) {
+        long duration = System.nanoTime() - start;
+        nanos.get(PROBE).add(duration);
+        counts.get(PROBE).increment();
+        synchronized (this) {
+            if (duration > slowestNanos) {
+                slowestNanos = duration;
+                slowestJdk = jdk;
+            }
+        }
+    }
+
+    /**
+     * Records a probe which has forked the java executable.
+     */
+    void recordFork() {
+        forks.increment();
+    }
+
+    void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    void recordCacheHits(int count) {
+        cacheHits.add(count);
+    }
+
+    void recordCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    /**
+     * Returns the metrics as a JSON document.
+     */
+    String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"phases\": {");
+        String sep = "\n";
+        for (String phase : PHASES) {
+            sb.append(sep)
+                    .append("    \"")
+                    .append(phase)
+                    .append("\": {\"count\": ")
+                    .append(counts.get(phase).sum())
+                    .append(", \"millis\": ")
+                    .append(millis(nanos.get(phase).sum()))
+                    .append('}');
+            sep = ",\n";
+        }
+        sb.append("\n  },\n");
+        sb.append("  \"forkedProbes\": ").append(forks.sum()).append(",\n");
+        sb.append("  \"cacheHits\": ").append(cacheHits.sum()).append(",\n");
+        sb.append("  \"cacheMisses\": ").append(cacheMisses.sum()).append(",\n");
+        synchronized (this) {
+            sb.append("  \"slowestProbe\": ");
+            if (slowestJdk != null) {
+                sb.append("{\"jdk\": ")
+                        .append(quote(slowestJdk.toString()))
+                        .append(", \"millis\": ")
+                        .append(millis(slowestNanos))
+                        .append('}');
+            } else {
+                sb.append("null");
+            }
+        }
+        sb.append("\n}\n");
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (String phase : PHASES) {
+            sb.append(phase)
+                    .append('=')
+                    .append(millis(nanos.get(phase).sum()))
+                    .append("ms (")
+                    .append(counts.get(phase).sum())
+                    .append("), ");
+        }
+        sb.append("forkedProbes=").append(forks.sum());
+        sb.append(", cacheHits=").append(cacheHits.sum());
+        sb.append(", cacheMisses=").append(cacheMisses.sum());
+        synchronized (this) {
+            if (slowestJdk != null) {
+                sb.append(", slowestProbe=")
+                        .append(slowestJdk)
+                        .append(" (")
+                        .append(millis(slowestNanos))
+                        .append("ms)");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
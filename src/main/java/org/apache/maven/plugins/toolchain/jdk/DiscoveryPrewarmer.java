@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts the discovery of JDK toolchains in the background as soon as the session starts, so that JDKs are
+ * probed while the projects are being read and the results are cached when {@code select-jdk-toolchain} runs.
+ * <p>
+ * This participant is only active when the plugin is registered as a core extension in
+ * {@code .mvn/extensions.xml}, or as a build extension using {@code <extensions>true</extensions>}, in which case
+ * the discovery starts once the projects have been read.
+ * <p>
+ * A build extension shares its class realm, and thus its discoverer, with the mojos of the plugin: a selection
+ * started while the discovery is in progress waits for the JDKs being probed instead of probing them again.
+ * A core extension is loaded in its own class realm, so its discoverer is not the one of the mojos: they only
+ * share the cache files and their locks, so that a JDK being probed by the participant is waited for and read
+ * from the cache by the selection.
+ *
+ * @since 3.3.1
+ */
+@Named("jdk-toolchain-discovery")
+@Singleton
+public class DiscoveryPrewarmer extends AbstractMavenLifecycleParticipant {
+
+    /**
+     * The session data key recording that the discovery has been started for the session.
+     */
+    static final String KEY = DiscoveryPrewarmer.class.getName();
+
+    /**
+     * System property to disable the discovery at session start when the plugin is registered as an extension.
+     */
+    public static final String PREWARM = "toolchain.jdk.discover.prewarm";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final ToolchainDiscoverer discoverer;
+
+    @Inject
+    public DiscoveryPrewarmer(ToolchainDiscoverer discoverer) {
+        this.discoverer = discoverer;
+    }
+
+    @Override
+    public void afterSessionStart(MavenSession session) {
+        start(session);
+    }
+
+    @Override
+    public void afterProjectsRead(MavenSession session) {
+        // build extensions are not notified of the session start
+        start(session);
+    }
+
+    private void start(MavenSession session) {
+        if (!Boolean.parseBoolean(session.getSystemProperties().getProperty(PREWARM, "true"))
+                || !Boolean.parseBoolean(session.getUserProperties().getProperty(PREWARM, "true"))
+                || session.getRepositorySession() == null) {
+            return;
+        }
+        if (!session.getRepositorySession().getData().set(KEY, null, Boolean.TRUE)) {
+            return;
+        }
+        log.debug("Starting the discovery of JDK toolchains in the background");
+        // the metrics of the build include the work done in the background
+        discoverer.getMetrics(session);
+        Thread thread = new Thread(
+                () -> {
+                    try {
+                        // each probe stores its result in the cache
+                        discoverer.discoverToolchains();
+                        log.debug("Background discovery of JDK toolchains completed");
+                    } catch (RuntimeException e) {
+                        log.debug("Error discovering JDK toolchains in the background: " + e, e);
+                    }
+                },
+                "toolchain-discoverer-prewarm");
+        // the discovery must not prevent the JVM from exiting
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the install directories and the cache files, so that a long-lived discoverer, such as the one of the
+ * Maven daemon, only scans the install directories again when they are modified.
+ * <p>
+ * The changes are not processed in the background: they are collected when the discoverer polls them, at the
+ * beginning of a discovery. A directory which does not exist is not watched through its parent, which is often
+ * the user home and would be listed again and again by the watch services polling the directories, such as on
+ * macOS: its creation is noticed by checking whether it exists when the changes are polled.
+ *
+ * @since 3.3.1
+ */
+final class DiscoveryWatcher {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final WatchService service;
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    /** the watched directories which do not exist */
+    private final Set<Path> missing = ConcurrentHashMap.newKeySet();
+
+    DiscoveryWatcher() throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Watches the entries of the given directory, or its creation if it does not exist.
+     */
+    void watch(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            missing.add(dir);
+            return;
+        }
+        missing.remove(dir);
+        try {
+            WatchKey key = dir.register(
+                    service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            keys.put(key, dir);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Unable to watch " + dir + ": " + e);
+        }
+    }
+
+    /**
+     * Returns the paths which have been created, deleted or modified since the last call. If some events have
+     * been lost, or if a watched directory has been created or is not accessible anymore, the directory itself is
+     * returned.
+     */
+    Set<Path> poll() {
+        Set<Path> changed = new HashSet<>();
+        WatchKey key;
+        while ((key = service.poll()) != null) {
+            Path dir = keys.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (dir == null) {
+                    continue;
+                }
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || !(event.context() instanceof Path)) {
+                    changed.add(dir);
+                } else {
+                    changed.add(dir.resolve((Path) event.context()));
+                }
+            }
+            if (!key.reset()) {
+                keys.remove(key);
+                if (dir != null) {
+                    changed.add(dir);
+                    // the directory may be created again
+                    missing.add(dir);
+                }
+            }
+        }
+        for (Path dir : missing) {
+            if (Files.isDirectory(dir)) {
+                watch(dir);
+                changed.add(dir);
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Finds the JDKs installed below an additional root, such as {@code /opt/toolchains} or {@code /nix/store/*-jdk-*}.
+ * <p>
+ * A root is a directory or a glob pattern matching directories. The directories matching the pattern are found by
+ * only walking as deep as the pattern, then the JDKs are searched in each matching directory up to a maximum depth.
+ * All the roots are walked in parallel, and each subdirectory of a matching directory is walked by its own task,
+ * so that a large root does not delay the other ones. The walk does not descend into a JDK, so that the content of
+ * the JDKs is never listed.
+ *
+ * @since 3.3.1
+ */
+final class InstallRootWalker {
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    /** the maximum depth of a pattern containing {@code **} */
+    private static final int MAX_PATTERN_DEPTH = 8;
+
+    private final int maxDepth;
+    private final Function<Path, Path> canonicalizer;
+
+    /**
+     * @param maxDepth the maximum depth at which JDKs are searched below a matching directory
+     * @param canonicalizer the function returning the real path of a JDK
+     */
+    InstallRootWalker(int maxDepth, Function<Path, Path> canonicalizer) {
+        this.maxDepth = maxDepth;
+        this.canonicalizer = canonicalizer;
+    }
+
+    /**
+     * Parses the roots separated by the path separator, expanding a leading {@code ~} to the user home.
+     */
+    static List<String> parseRoots(String roots, Path userHome) {
+        List<String> result = new ArrayList<>();
+        if (roots != null) {
+            for (String root : roots.split(File.pathSeparator)) {
+                root = root.trim();
+                if (root.equals("~") || root.startsWith("~/") || root.startsWith("~\\")) {
+                    root = userHome + root.substring(1);
+                }
+                if (!root.isEmpty()) {
+                    result.add(root);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the directory to walk for the given root: the root itself, or the directory containing the first
+     * path element with a glob character.
+     */
+    static Path getBase(String root) {
+        int glob = indexOfGlob(root);
+        if (glob < 0) {
+            return Paths.get(root);
+        }
+        int sep = lastIndexOfSeparator(root, glob);
+        return Paths.get(sep > 0 ? root.substring(0, sep) : sep == 0 ? root.substring(0, 1) : ".");
+    }
+
+    /**
+     * Returns the elements of the given root below its base, without the empty and {@code .} elements, so that
+     * the pattern does not depend on how the base is spelled.
+     */
+    static List<String> getPattern(String root) {
+        int glob = indexOfGlob(root);
+        List<String> elements = new ArrayList<>();
+        if (glob >= 0) {
+            StringTokenizer tokenizer =
+                    new StringTokenizer(root.substring(lastIndexOfSeparator(root, glob) + 1), "/" + File.separator);
+            while (tokenizer.hasMoreTokens()) {
+                String element = tokenizer.nextToken();
+                if (!element.equals(".")) {
+                    elements.add(element);
+                }
+            }
+        }
+        return elements;
+    }
+
+    private static int lastIndexOfSeparator(String root, int from) {
+        return Math.max(root.lastIndexOf('/', from), root.lastIndexOf(File.separatorChar, from));
+    }
+
+    private static int indexOfGlob(String root) {
+        for (int i = 0; i < root.length(); i++) {
+            if (GLOB_CHARS.indexOf(root.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the JDKs below the given roots, using tasks of the given executor. No task waits for another one, so
+     * that the executor can be bounded.
+     *
+     * @param listener called with each root and the JDKs found below it, from the thread which completed its walk
+     * @return the JDKs found below each root, in the order of the roots
+     */
+    Map<String, Set<Path>> findJdks(
+            List<String> roots, ExecutorService executor, BiConsumer<String, Set<Path>> listener)
+            throws InterruptedException {
+        Map<String, CompletableFuture<Set<Path>>> walks = new LinkedHashMap<>();
+        for (String root : roots) {
+            CompletableFuture<Set<Path>> walk = CompletableFuture.supplyAsync(() -> findMatchingDirs(root), executor)
+                    .thenCompose(dirs -> walkAll(dirs, executor))
+                    // the root could not be walked
+                    .exceptionally(e -> Collections.emptySet());
+            walks.put(root, walk.whenComplete((jdks, e) -> {
+                if (jdks != null) {
+                    listener.accept(root, jdks);
+                }
+            }));
+        }
+        Map<String, Set<Path>> jdksByRoot = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<Set<Path>>> walk : walks.entrySet()) {
+            try {
+                jdksByRoot.put(walk.getKey(), walk.getValue().get());
+            } catch (ExecutionException e) {
+                jdksByRoot.put(walk.getKey(), Collections.emptySet());
+            }
+        }
+        return jdksByRoot;
+    }
+
+    /**
+     * Walks the given directories, or their subdirectories if they are not JDKs, in parallel.
+     */
+    private CompletableFuture<Set<Path>> walkAll(List<Path> dirs, ExecutorService executor) {
+        Set<Path> jdks = new LinkedHashSet<>();
+        List<CompletableFuture<List<Path>>> walks = new ArrayList<>();
+        for (Path dir : dirs) {
+            if (ToolchainDiscoverer.hasJavaC(dir)) {
+                jdks.add(canonicalizer.apply(dir));
+                continue;
+            }
+            try (Stream<Path> subdirs = Files.list(dir)) {
+                subdirs.filter(Files::isDirectory).forEach(subdir -> walks.add(walkAsync(subdir, executor)));
+            } catch (IOException | UncheckedIOException e) {
+                // the directory could not be listed
+            }
+        }
+        return CompletableFuture.allOf(walks.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> {
+                    walks.forEach(walk -> jdks.addAll(walk.join()));
+                    return jdks;
+                });
+    }
+
+    private CompletableFuture<List<Path>> walkAsync(Path subdir, ExecutorService executor) {
+        return CompletableFuture.supplyAsync(() -> walk(subdir, maxDepth - 1), executor)
+                // the directory could not be walked
+                .exceptionally(e -> Collections.emptyList());
+    }
+
+    /**
+     * Returns the directories matching the given root, without descending below the depth of the pattern.
+     */
+    List<Path> findMatchingDirs(String root) {
+        Path base = getBase(root);
+        if (!Files.isDirectory(base)) {
+            return Collections.emptyList();
+        }
+        if (indexOfGlob(root) < 0) {
+            return Collections.singletonList(base);
+        }
+        List<String> elements = getPattern(root);
+        String pattern = String.join("/", elements);
+        int depth = pattern.contains("**") ? MAX_PATTERN_DEPTH : elements.size();
+        // the pattern is matched against the path below the base, so the base does not need to be escaped
+        PathMatcher glob = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        int baseCount = base.getNameCount();
+        Predicate<Path> matcher = dir -> glob.matches(dir.subpath(baseCount, dir.getNameCount()));
+        List<Path> dirs = new ArrayList<>();
+        walk(base, depth, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(base) && matcher.test(dir)) {
+                    dirs.add(dir);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // the directories at the maximum depth are visited as files
+                if (attrs.isDirectory() && matcher.test(file)) {
+                    dirs.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return dirs;
+    }
+
+    /**
+     * Returns the JDKs found below the given directory, up to the given depth.
+     */
+    private List<Path> walk(Path dir, int depth) {
+        List<Path> jdks = new ArrayList<>();
+        walk(dir, depth, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                if (ToolchainDiscoverer.hasJavaC(d)) {
+                    jdks.add(canonicalizer.apply(d));
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isDirectory() && ToolchainDiscoverer.hasJavaC(file)) {
+                    jdks.add(canonicalizer.apply(file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return jdks;
+    }
+
+    private static void walk(Path dir, int depth, SimpleFileVisitor<Path> visitor) {
+        SimpleFileVisitor<Path> lenient = new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                return visitor.preVisitDirectory(d, attrs);
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                return visitor.visitFile(file, attrs);
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // unreadable directories and symbolic link loops are ignored
+                return FileVisitResult.CONTINUE;
+            }
+        };
+        try {
+            // JDKs are often installed using symbolic links
+            Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), depth, lenient);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
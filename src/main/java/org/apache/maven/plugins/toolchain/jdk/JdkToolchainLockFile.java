@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.apache.maven.toolchain.model.ToolchainModel;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import static org.apache.maven.plugins.toolchain.jdk.SelectJdkToolchainMojo.TOOLCHAIN_TYPE_JDK;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.CURRENT;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.ENV;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.FINGERPRINT;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.JDK_HOME;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.LTS;
+
+/**
+ * A lock file recording the JDK toolchain selected for some requirements, so that later builds can reuse it
+ * without discovering JDKs, as long as the requirements are the same and the JDK has not been modified.
+ * <p>
+ * The {@value ToolchainDiscoverer#CURRENT}, {@value ToolchainDiscoverer#ENV} and {@value ToolchainDiscoverer#LTS}
+ * flags are not recorded, as they depend on the environment of the build: they are computed again when the lock
+ * file is read.
+ *
+ * @since 3.3.1
+ */
+final class JdkToolchainLockFile {
+
+    static final String REQUIREMENTS = "requirements";
+    static final String PROVIDES_PREFIX = "provides.";
+
+    private final Path file;
+
+    JdkToolchainLockFile(Path file) {
+        this.file = file;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the locked toolchain, if the lock file has been written for the given requirements and the locked
+     * JDK has not been modified since.
+     *
+     * @param requirements the requirements, such as the selection options
+     * @return the locked toolchain, or {@code null} if the lock file does not exist or is not valid
+     */
+    ToolchainModel read(String requirements) throws IOException {
+        Properties lock = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            lock.load(reader);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        String jdkHome = lock.getProperty(JDK_HOME);
+        if (jdkHome == null || !hash(requirements).equals(lock.getProperty(REQUIREMENTS))) {
+            return null;
+        }
+        Path jdk = Paths.get(jdkHome);
+        if (!Files.isDirectory(jdk) || !ToolchainDiscoverer.fingerprint(jdk).equals(lock.getProperty(FINGERPRINT))) {
+            return null;
+        }
+
+        ToolchainModel model = new ToolchainModel();
+        model.setType(TOOLCHAIN_TYPE_JDK);
+        for (String key : lock.stringPropertyNames()) {
+            if (key.startsWith(PROVIDES_PREFIX)) {
+                model.addProvide(key.substring(PROVIDES_PREFIX.length()), lock.getProperty(key));
+            }
+        }
+        Xpp3Dom configuration = new Xpp3Dom("configuration");
+        Xpp3Dom home = new Xpp3Dom(JDK_HOME);
+        home.setValue(jdkHome);
+        configuration.addChild(home);
+        model.setConfiguration(configuration);
+        return ToolchainDiscoverer.withFlags(
+                ToolchainDiscoverer.getFlags().getOrDefault(jdk, Collections.emptyMap()), model);
+    }
+
+    /**
+     * Records the toolchain selected for the given requirements.
+     */
+    void write(String requirements, ToolchainModel model) throws IOException {
+        Xpp3Dom home = model.getConfiguration() instanceof Xpp3Dom
+                ? ((Xpp3Dom) model.getConfiguration()).getChild(JDK_HOME)
+                : null;
+        if (home == null || home.getValue() == null) {
+            throw new IOException("the toolchain does not define " + JDK_HOME);
+        }
+        String jdkHome = home.getValue();
+        Properties lock = new Properties();
+        lock.setProperty(REQUIREMENTS, hash(requirements));
+        lock.setProperty(JDK_HOME, jdkHome);
+        lock.setProperty(FINGERPRINT, ToolchainDiscoverer.fingerprint(Paths.get(jdkHome)));
+        for (String key : model.getProvides().stringPropertyNames()) {
+            if (!CURRENT.equals(key) && !ENV.equals(key) && !LTS.equals(key)) {
+                lock.setProperty(PROVIDES_PREFIX + key, model.getProvides().getProperty(key));
+            }
+        }
+        StringWriter content = new StringWriter();
+        lock.store(content, "JDK toolchain selected by select-jdk-toolchain");
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        DiscoveryCache.writeAtomically(file, content.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String hash(String requirements) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest(requirements.getBytes(StandardCharsets.UTF_8))) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
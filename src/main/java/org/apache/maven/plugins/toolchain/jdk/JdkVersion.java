@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A parsed {@code java.version}, such as {@code 1.8.0_392}, {@code 17.0.9} or {@code 22-ea}.
+ * <p>
+ * Versions are compared numerically, so that {@code 9} is lower than {@code 17}, and pre-release versions are
+ * lower than the release with the same number. The {@code 1.} prefix of versions before JDK 9 is dropped, so
+ * that {@code 1.8.0_392} has the feature version {@code 8}.
+ *
+ * @since 3.3.1
+ */
+final class JdkVersion implements Comparable<JdkVersion> {
+
+    /** parsed versions, there are only a handful of distinct versions on a given machine */
+    private static final Map<String, JdkVersion> CACHE = new ConcurrentHashMap<>();
+
+    private static final int MAX_CACHE_SIZE = 1024;
+
+    private static final int[] LTS_FEATURES = {8, 11, 17, 21, 25};
+
+    private final String version;
+    private final int[] components;
+    private final boolean preRelease;
+    private final boolean lts;
+
+    private JdkVersion(String version) {
+        this.version = version;
+        List<Integer> parsed = new ArrayList<>();
+        int i = 0;
+        while (i < version.length()) {
+            int start = i;
+            while (i < version.length() && Character.isDigit(version.charAt(i))) {
+                i++;
+            }
+            if (i == start || i - start > 9) {
+                break;
+            }
+            parsed.add(Integer.parseInt(version.substring(start, i)));
+            if (i < version.length() && (version.charAt(i) == '.' || version.charAt(i) == '_')) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (parsed.size() > 1 && parsed.get(0) == 1) {
+            parsed.remove(0);
+        }
+        this.components = parsed.stream().mapToInt(Integer::intValue).toArray();
+        this.preRelease = i < version.length() && version.charAt(i) == '-';
+        this.lts = Arrays.binarySearch(LTS_FEATURES, getFeature()) >= 0;
+    }
+
+    /**
+     * Returns the parsed version, which is cached so that sorting toolchains does not parse their versions again.
+     */
+    static JdkVersion of(String version) {
+        JdkVersion v = CACHE.get(version);
+        if (v == null) {
+            v = new JdkVersion(version);
+            if (CACHE.size() < MAX_CACHE_SIZE) {
+                CACHE.put(version, v);
+            }
+        }
+        return v;
+    }
+
+    /**
+     * Returns the feature version, such as {@code 8} or {@code 17}, or {@code 0} if the version could not be parsed.
+     */
+    int getFeature() {
+        return components.length > 0 ? components[0] : 0;
+    }
+
+    boolean isLts() {
+        return lts;
+    }
+
+    @Override
+    public int compareTo(JdkVersion o) {
+        int length = Math.max(components.length, o.components.length);
+        for (int i = 0; i < length; i++) {
+            int a = i < components.length ? components[i] : 0;
+            int b = i < o.components.length ? o.components[i] : 0;
+            if (a != b) {
+                return Integer.compare(a, b);
+            }
+        }
+        return Boolean.compare(o.preRelease, preRelease);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof JdkVersion && compareTo((JdkVersion) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = preRelease ? 1 : 0;
+        int length = components.length;
+        while (length > 0 && components[length - 1] == 0) {
+            length--;
+        }
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + components[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return version;
+    }
+}
@@ -21,11 +21,19 @@ package org.apache.maven.plugins.toolchain.jdk;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Stream;
+import java.util.TreeMap;
 
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
@@ -33,12 +41,13 @@ import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.toolchain.ProjectLocks;
+import org.apache.maven.plugins.toolchain.ToolchainIndex;
+import org.apache.maven.plugins.toolchain.ToolchainRequirements;
 import org.apache.maven.toolchain.MisconfiguredToolchainException;
-import org.apache.maven.toolchain.RequirementMatcherFactory;
 import org.apache.maven.toolchain.ToolchainFactory;
 import org.apache.maven.toolchain.ToolchainManagerPrivate;
 import org.apache.maven.toolchain.ToolchainPrivate;
-import org.apache.maven.toolchain.model.PersistedToolchains;
 import org.apache.maven.toolchain.model.ToolchainModel;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 
@@ -53,7 +62,7 @@ import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.VERSION
  *
  * @since 3.2.0
  */
-@Mojo(name = "select-jdk-toolchain", defaultPhase = LifecyclePhase.VALIDATE)
+@Mojo(name = "select-jdk-toolchain", defaultPhase = LifecyclePhase.VALIDATE, threadSafe = true)
 public class SelectJdkToolchainMojo extends AbstractMojo {
 
     public static final String TOOLCHAIN_TYPE_JDK = "jdk";
@@ -133,6 +142,40 @@ public class SelectJdkToolchainMojo extends AbstractMojo {
     @Parameter(property = "toolchain.jdk.comparator", defaultValue = "lts,current,env,version,vendor")
     private String comparator;
 
+    /**
+     * Select amongst the cached JDK toolchains without checking whether they are still valid, which avoids
+     * scanning the install directories and probing modified JDKs before the build can start. The cache is
+     * revalidated in the background for the next build. If nothing is cached yet, the JDKs are discovered as usual.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = ToolchainDiscoverer.STALE_WHILE_REVALIDATE, defaultValue = "false")
+    private boolean staleWhileRevalidate;
+
+    /**
+     * A file recording the selected JDK toolchain, such as
+     * {@code ${maven.multiModuleProjectDirectory}/.mvn/jdk-toolchain.lock}.
+     * If the file has been written for the same requirements and the recorded JDK has not been modified since,
+     * the recorded JDK is selected without looking at the configured and discovered toolchains. Otherwise, the
+     * toolchain is selected as usual and the file is updated. By default, no file is used.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "toolchain.jdk.lockFile")
+    private File lockFile;
+
+    /**
+     * A JSON file to write the timings and counters of the JDK discovery to, such as
+     * {@code ${project.build.directory}/jdk-toolchain-discovery.json}: the time spent scanning the install
+     * directories, canonicalizing paths, reading and writing the cache and probing JDKs, the number of forked
+     * probes, the cache hits and misses, and the slowest probe, since the start of the build. By default, no file
+     * is written.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "toolchain.jdk.discover.report")
+    private File discoveryReport;
+
     /**
      * Toolchain manager
      */
@@ -179,45 +222,87 @@ public class SelectJdkToolchainMojo extends AbstractMojo {
         Optional.ofNullable(vendor).ifPresent(v -> requirements.put(VENDOR, v));
         Optional.ofNullable(env).ifPresent(v -> requirements.put(ENV, v));
 
-        ToolchainModel currentJdkToolchainModel =
-                discoverer.getCurrentJdkToolchain().orElse(null);
-        ToolchainPrivate currentJdkToolchain =
-                currentJdkToolchainModel != null ? factory.createToolchain(currentJdkToolchainModel) : null;
-
-        if (useJdk == JdkMode.IfMatch && currentJdkToolchain != null && matches(currentJdkToolchain, requirements)) {
-            getLog().info("Not using an external toolchain as the current JDK '" + currentJdkToolchain
-                    + "' matches the requirements.");
-            return;
+        // the selection only depends on the configuration, so it is done once for all the modules of the reactor
+        String options = new TreeMap<>(requirements) + ":" + useJdk + ":" + discoverToolchains + ":" + comparator;
+        String key = SelectJdkToolchainMojo.class.getName() + ":" + options;
+        Object selected = session.getRepositorySession().getData().get(key);
+        DiscoveryMetrics metrics = discoverer.getMetrics(session);
+        Optional<ToolchainPrivate> toolchain;
+        if (selected instanceof Optional) {
+            toolchain = ((Optional<?>) selected).map(ToolchainPrivate.class::cast);
+            getLog().debug("Reusing the JDK toolchain selected by a previous module");
+        } else {
+            toolchain = select(requirements, options);
+            session.getRepositorySession().getData().set(key, toolchain);
+            getLog().debug("JDK toolchain discovery metrics: " + metrics);
         }
-
-        ToolchainPrivate toolchain = Stream.of(toolchainManager.getToolchainsForType(TOOLCHAIN_TYPE_JDK, session))
-                .filter(tc -> matches(tc, requirements))
-                .findFirst()
-                .orElse(null);
-        if (toolchain != null) {
-            getLog().info("Found matching JDK toolchain: " + toolchain);
+        if (discoveryReport != null) {
+            writeDiscoveryReport(metrics);
         }
 
-        if (toolchain == null && discoverToolchains) {
-            getLog().debug("No matching toolchains configured, trying to discover JDK toolchains");
-            PersistedToolchains persistedToolchains = discoverer.discoverToolchains(comparator);
-            getLog().debug("Discovered " + persistedToolchains.getToolchains().size() + " JDK toolchains");
-
-            for (ToolchainModel tcm : persistedToolchains.getToolchains()) {
-                ToolchainPrivate tc = factory.createToolchain(tcm);
-                if (tc != null && matches(tc, requirements)) {
-                    toolchain = tc;
-                    getLog().info("Discovered matching JDK toolchain: " + toolchain);
-                    break;
-                }
+        if (toolchain.isPresent()) {
+            synchronized (ProjectLocks.get(session)) {
+                toolchainManager.storeToolchainToBuildContext(toolchain.get(), session);
             }
+            getLog().info("Selected JDK toolchain: " + toolchain.get());
         }
+    }
 
-        if (toolchain == null) {
-            throw new MojoFailureException(
-                    "Cannot find matching toolchain definitions for the following toolchain types:" + requirements
-                            + System.lineSeparator()
-                            + "Define the required toolchains in your ~/.m2/toolchains.xml file.");
+    /**
+     * Select the toolchain matching the given requirements.
+     *
+     * @param options the requirements and selection options, which must match the lock file
+     * @return the toolchain, or an empty optional if the current JDK should be used
+     */
+    private Optional<ToolchainPrivate> select(Map<String, String> requirements, String options)
+            throws MisconfiguredToolchainException, MojoFailureException {
+        ToolchainRequirements compiled = new ToolchainRequirements(requirements, Collections.singleton(ENV));
+        // the event is also emitted when the selection fails, the source telling why
+        Object event = DiscoveryEvents.beginSelection();
+        String source = "failed";
+        ToolchainPrivate toolchain = null;
+        ToolchainPrivate currentJdkToolchain;
+        try {
+            ToolchainModel currentJdkToolchainModel =
+                    discoverer.getCurrentJdkToolchain().orElse(null);
+            currentJdkToolchain =
+                    currentJdkToolchainModel != null ? factory.createToolchain(currentJdkToolchainModel) : null;
+
+            if (useJdk == JdkMode.IfMatch && currentJdkToolchain != null && matches(currentJdkToolchain, compiled)) {
+                getLog().info("Not using an external toolchain as the current JDK '" + currentJdkToolchain
+                        + "' matches the requirements.");
+                source = "current";
+                toolchain = currentJdkToolchain;
+                return Optional.empty();
+            }
+
+            JdkToolchainLockFile lock = lockFile != null ? new JdkToolchainLockFile(lockFile.toPath()) : null;
+            toolchain = lock != null ? readLockFile(lock, options, compiled) : null;
+            if (toolchain != null) {
+                source = "lockFile";
+            } else {
+                toolchain = findConfigured(compiled);
+                if (toolchain != null) {
+                    source = "configured";
+                } else if (discoverToolchains) {
+                    toolchain = discover(compiled);
+                    source = toolchain != null ? "discovered" : source;
+                }
+                if (toolchain == null) {
+                    source = "none";
+                    throw new MojoFailureException(
+                            "Cannot find matching toolchain definitions for the following toolchain types:"
+                                    + requirements
+                                    + System.lineSeparator()
+                                    + "Define the required toolchains in your ~/.m2/toolchains.xml file.");
+                }
+                if (lock != null) {
+                    writeLockFile(lock, options, toolchain);
+                }
+            }
+        } finally {
+            DiscoveryEvents.endSelection(
+                    event, options, source, toolchain != null ? Paths.get(getJdkHome(toolchain)) : null);
         }
 
         if (useJdk == JdkMode.IfSame
@@ -225,40 +310,99 @@ public class SelectJdkToolchainMojo extends AbstractMojo {
                 && Objects.equals(getJdkHome(currentJdkToolchain), getJdkHome(toolchain))) {
             getLog().info("Not using an external toolchain as the current JDK '" + currentJdkToolchain
                     + "' has been selected.");
-            return;
+            return Optional.empty();
         }
 
-        toolchainManager.storeToolchainToBuildContext(toolchain, session);
-        getLog().info("Selected JDK toolchain: " + toolchain);
+        return Optional.of(toolchain);
+    }
+
+    /**
+     * Find the first configured toolchain matching the given requirements.
+     */
+    private ToolchainPrivate findConfigured(ToolchainRequirements compiled) throws MisconfiguredToolchainException {
+        ToolchainPrivate[] configured = toolchainManager.getToolchainsForType(TOOLCHAIN_TYPE_JDK, session);
+        ToolchainPrivate toolchain = ToolchainIndex.get(
+                        session, TOOLCHAIN_TYPE_JDK, configured, Collections.singleton(ENV))
+                .findFirst(compiled)
+                .orElse(null);
+        if (toolchain != null) {
+            getLog().info("Found matching JDK toolchain: " + toolchain);
+        }
+        return toolchain;
+    }
+
+    /**
+     * Find the first discovered toolchain matching the given requirements.
+     */
+    private ToolchainPrivate discover(ToolchainRequirements compiled) throws MisconfiguredToolchainException {
+        getLog().debug("No matching toolchains configured, trying to discover JDK toolchains");
+        // stop at the first match, without waiting for the remaining JDKs to be probed
+        Iterator<ToolchainModel> discovered =
+                discoverer.discoverToolchainsLazily(comparator, version, staleWhileRevalidate).iterator();
+        int count = 0;
+        ToolchainPrivate toolchain = null;
+        while (toolchain == null && discovered.hasNext()) {
+            ToolchainPrivate tc = factory.createToolchain(discovered.next());
+            count++;
+            if (tc != null && matches(tc, compiled)) {
+                toolchain = tc;
+                getLog().info("Discovered matching JDK toolchain: " + toolchain);
+            }
+        }
+        getLog().debug("Checked " + count + " discovered JDK toolchains");
+        return toolchain;
     }
 
-    private boolean matches(ToolchainPrivate tc, Map<String, String> requirements) {
-        ToolchainModel model = tc.getModel();
-        for (Map.Entry<String, String> req : requirements.entrySet()) {
-            String key = req.getKey();
-            String reqVal = req.getValue();
-            String tcVal = model.getProvides().getProperty(key);
-            if (tcVal == null) {
-                getLog().debug("Toolchain " + tc + " is missing required property: " + key);
-                return false;
+    private ToolchainPrivate readLockFile(JdkToolchainLockFile lock, String options, ToolchainRequirements compiled)
+            throws MisconfiguredToolchainException {
+        try {
+            ToolchainModel model = lock.read(options);
+            if (model != null) {
+                ToolchainPrivate toolchain = factory.createToolchain(model);
+                // the env flag may have changed since the lock file has been written
+                if (toolchain != null && matches(toolchain, compiled)) {
+                    getLog().info("Using JDK toolchain from lock file " + lock.getFile() + ": " + toolchain);
+                    return toolchain;
+                }
             }
-            if (!matches(key, reqVal, tcVal)) {
-                getLog().debug("Toolchain " + tc + " doesn't match required property: " + key);
-                return false;
+            getLog().debug("Lock file " + lock.getFile() + " is missing or outdated");
+        } catch (IOException e) {
+            getLog().warn("Unable to read lock file " + lock.getFile() + ": " + e);
+        }
+        return null;
+    }
+
+    private void writeLockFile(JdkToolchainLockFile lock, String options, ToolchainPrivate toolchain) {
+        try {
+            lock.write(options, toolchain.getModel());
+        } catch (IOException e) {
+            getLog().warn("Unable to write lock file " + lock.getFile() + ": " + e);
+        }
+    }
+
+    private void writeDiscoveryReport(DiscoveryMetrics metrics) {
+        try {
+            Path report = discoveryReport.toPath();
+            if (report.getParent() != null) {
+                Files.createDirectories(report.getParent());
             }
+            Files.write(report, metrics.toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            getLog().warn("Unable to write discovery report " + discoveryReport + ": " + e);
         }
-        return true;
     }
 
-    private boolean matches(String key, String reqVal, String tcVal) {
-        switch (key) {
-            case VERSION:
-                return RequirementMatcherFactory.createVersionMatcher(tcVal).matches(reqVal);
-            case ENV:
-                return tcVal.matches("(.*,|^)\\Q" + reqVal + "\\E(,.*|$)");
-            default:
-                return RequirementMatcherFactory.createExactMatcher(tcVal).matches(reqVal);
+    private boolean matches(ToolchainPrivate tc, ToolchainRequirements requirements) {
+        String key = requirements.getMismatch(tc.getModel());
+        if (key == null) {
+            return true;
+        }
+        if (tc.getModel().getProvides().getProperty(key) == null) {
+            getLog().debug("Toolchain " + tc + " is missing required property: " + key);
+        } else {
+            getLog().debug("Toolchain " + tc + " doesn't match required property: " + key);
         }
+        return false;
     }
 
     private String getJdkHome(ToolchainPrivate toolchain) {
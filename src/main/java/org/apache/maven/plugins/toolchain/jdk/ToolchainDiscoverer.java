@@ -21,35 +21,61 @@ package org.apache.maven.plugins.toolchain.jdk;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Properties;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugins.toolchain.jdk.DiscoveryCache.InstallDir;
 import org.apache.maven.toolchain.model.PersistedToolchains;
 import org.apache.maven.toolchain.model.ToolchainModel;
-import org.apache.maven.toolchain.model.io.xpp3.MavenToolchainsXpp3Reader;
-import org.apache.maven.toolchain.model.io.xpp3.MavenToolchainsXpp3Writer;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
-import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.eclipse.aether.SessionData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -83,17 +109,144 @@ public class ToolchainDiscoverer {
 
     public static final String DISCOVERED_TOOLCHAINS_CACHE_XML = ".m2/discovered-jdk-toolchains-cache.xml";
 
+    /**
+     * Compact binary version of the cache, used in addition to the XML file when the {@value #CACHE_FORMAT}
+     * system property is set to {@value #CACHE_FORMAT_BINARY}.
+     */
+    public static final String DISCOVERED_TOOLCHAINS_CACHE_BIN = ".m2/discovered-jdk-toolchains-cache.bin";
+
+    /**
+     * Additional discovery information which can not be stored in the cache: the directories which have
+     * been rejected, so that they are not probed again until they are modified, and the JDKs found in each
+     * install directory, so that the directory is not listed again until it is modified.
+     */
+    public static final String DISCOVERED_TOOLCHAINS_INDEX_PROPERTIES = ".m2/discovered-jdk-toolchains-index.properties";
+
     public static final String JDK_HOME = "jdkHome";
+    public static final String FINGERPRINT = "fingerprint";
     public static final String JAVA_HOME = "java.home";
 
+    public static final String RELEASE = "release";
+
+    /**
+     * System property to configure the maximum number of JDKs probed in parallel.
+     */
+    public static final String DISCOVER_THREADS = "toolchain.jdk.discover.threads";
+
+    /**
+     * System property to configure the time in seconds after which the discovery returns the JDKs probed so far.
+     */
+    public static final String DISCOVER_TIMEOUT = "toolchain.jdk.discover.timeout";
+
+    /**
+     * System property to configure the time in seconds after which a forked JDK probe is killed.
+     */
+    public static final String PROBE_TIMEOUT = "toolchain.jdk.discover.probeTimeout";
+
+    /**
+     * System property to enable or disable watching the install directories and the cache, so that a discoverer
+     * which is reused across builds notices the JDKs installed or removed since the previous build without scanning
+     * all the install directories again. It is enabled by default in the Maven daemon.
+     */
+    public static final String WATCH = "toolchain.jdk.discover.watch";
+
+    /**
+     * System property set by the Maven daemon.
+     */
+    private static final String MVND_HOME = "mvnd.home";
+
+    /**
+     * System property to configure the space separated JVM options used to start a forked JDK probe, which
+     * default to {@value #DEFAULT_PROBE_OPTIONS}. Unrecognized options are ignored, so that the same options
+     * can be used for all JDK versions.
+     */
+    public static final String PROBE_OPTIONS = "toolchain.jdk.discover.probeOptions";
+
+    /**
+     * Options keeping the startup cost of a JVM which only prints its properties low: a small heap, the serial
+     * collector, class data sharing, only the C1 compiler and no performance data file.
+     */
+    public static final String DEFAULT_PROBE_OPTIONS =
+            "-Xshare:auto -XX:TieredStopAtLevel=1 -XX:+UseSerialGC -Xms8m -Xmx64m -XX:-UsePerfData";
+
+    /**
+     * System property to configure the format of the cache, either {@code xml} (the default) or
+     * {@value #CACHE_FORMAT_BINARY}.
+     */
+    public static final String CACHE_FORMAT = "toolchain.jdk.discover.cacheFormat";
+
+    public static final String CACHE_FORMAT_BINARY = "binary";
+
+    /**
+     * System property to return the cached toolchains without checking whether they are still valid, the install
+     * directories being scanned again and the modified JDKs probed again in the background for the next build.
+     */
+    public static final String STALE_WHILE_REVALIDATE = "toolchain.jdk.discover.staleWhileRevalidate";
+
+    /**
+     * System property to configure additional directories in which JDKs are searched, separated by the path
+     * separator. Each entry is a directory or a glob pattern matching directories, such as
+     * {@code /opt/toolchains/*} or {@code /nix/store/*-jdk-*}, and a leading {@code ~} is replaced by the user home.
+     */
+    public static final String DISCOVER_ROOTS = "toolchain.jdk.discover.roots";
+
+    /**
+     * System property to configure how many levels below the directories given by {@value #DISCOVER_ROOTS} JDKs
+     * are searched, which defaults to {@value #DEFAULT_DISCOVER_MAX_DEPTH}.
+     */
+    public static final String DISCOVER_MAX_DEPTH = "toolchain.jdk.discover.maxDepth";
+
+    private static final int DEFAULT_DISCOVER_MAX_DEPTH = 3;
+
+    private static final long DEFAULT_DISCOVER_TIMEOUT = 60;
+    private static final long DEFAULT_PROBE_TIMEOUT = 10;
+    /** the time to wait for the output of a probe before checking it again */
+    private static final long PROBE_POLL_MILLIS = 5;
+
+    /**
+     * Implementors of JDK 9+ builds which are known to use the default OpenJDK runtime name.
+     */
+    private static final Set<String> OPENJDK_RUNTIME_IMPLEMENTORS =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+                    "AdoptOpenJDK",
+                    "Alibaba",
+                    "Amazon.com Inc.",
+                    "Azul Systems, Inc.",
+                    "BellSoft",
+                    "Eclipse Adoptium",
+                    "Eclipse Foundation",
+                    "GraalVM Community",
+                    "JetBrains s.r.o.",
+                    "Microsoft",
+                    "Red Hat, Inc.",
+                    "SAP SE",
+                    "Tencent")));
+
+    private static final String OPENJDK_RUNTIME_NAME = "OpenJDK Runtime Environment";
+
+    /** threads reading the output of the probes, which are reused across probes */
+    private static final ExecutorService PROBE_READERS = Executors.newCachedThreadPool(new ProbeThreadFactory());
+
     private static final String COMMA = ",";
     public static final String USER_HOME = "user.home";
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    private volatile Map<Path, ToolchainModel> cache;
-    private volatile boolean cacheModified;
+    private volatile DiscoveryCache cache;
+    private final Map<String, Comparator<ToolchainModel>> comparators = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<List<ToolchainModel>>> discoveries = new ConcurrentHashMap<>();
+    private final Map<Path, CompletableFuture<ToolchainModel>> probesInProgress = new ConcurrentHashMap<>();
     private volatile Set<Path> foundJdks;
+    /** the JDKs found in each install directory */
+    private volatile Map<Path, List<Path>> installDirJdks = Collections.emptyMap();
+    /** the JDKs found below each additional root */
+    private volatile Map<String, Set<Path>> rootJdks = Collections.emptyMap();
+    private volatile DiscoveryWatcher watcher;
+    private final AtomicBoolean revalidating = new AtomicBoolean();
+    private final ProbeResults probeResults = new ProbeResults();
+    /** threads probing the JDKs, shared by the concurrent discoveries so that their number stays bounded */
+    private final ExecutorService probeExecutor = newProbeExecutor();
+    private volatile DiscoveryMetrics metrics = new DiscoveryMetrics();
 
     /**
      * Build the model for the current JDK toolchain
@@ -130,126 +283,423 @@ public class ToolchainDiscoverer {
      * never <code>null</code>.
      */
     public PersistedToolchains discoverToolchains(String comparator) {
+        // concurrent callers, such as modules built in parallel, share the discovery in progress
+        CompletableFuture<List<ToolchainModel>> discovery = new CompletableFuture<>();
+        CompletableFuture<List<ToolchainModel>> inProgress = discoveries.putIfAbsent(comparator, discovery);
+        List<ToolchainModel> tcs;
+        if (inProgress == null) {
+            try {
+                discovery.complete(discoverToolchainsLazily(comparator).collect(Collectors.toList()));
+                log.debug("JDK toolchain discovery metrics: " + metrics);
+            } finally {
+                discoveries.remove(comparator, discovery);
+                discovery.complete(Collections.emptyList());
+            }
+            tcs = discovery.join();
+        } else {
+            log.debug("Waiting for the discovery of JDK toolchains in progress");
+            try {
+                tcs = inProgress.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tcs = Collections.emptyList();
+            } catch (ExecutionException e) {
+                tcs = Collections.emptyList();
+            }
+        }
+        PersistedToolchains ps = new PersistedToolchains();
+        ps.setToolchains(tcs.stream().map(ToolchainModel::clone).collect(Collectors.toList()));
+        return ps;
+    }
+
+    /**
+     * Returns the discovered toolchains sorted using the given comparator, never <code>null</code>.
+     * <p>
+     * Cached JDKs are available immediately while the other ones are probed in the background, and a toolchain
+     * is returned as soon as none of the JDKs still being probed could be sorted before it. A caller looking for
+     * the first matching toolchain can thus stop before all the JDKs have been probed, in which case the
+     * remaining probes complete in the background to refresh the cache.
+     *
+     * @since 3.3.1
+     */
+    public Stream<ToolchainModel> discoverToolchainsLazily(String comparator) {
+        return discoverToolchainsLazily(comparator, null);
+    }
+
+    /**
+     * Returns the discovered toolchains sorted using the given comparator, never <code>null</code>.
+     * <p>
+     * If a version requirement is given, the JDKs whose directory name or {@code JAVA{xx}_HOME} environment
+     * variable denotes a version which does not match the requirement are not probed, unless the caller
+     * iterates past the other toolchains, in which case they are probed and returned last.
+     *
+     * @param comparator the comparator
+     * @param version the version requirement, or {@code null}
+     * @since 3.3.1
+     */
+    public Stream<ToolchainModel> discoverToolchainsLazily(String comparator, String version) {
+        return discoverToolchainsLazily(comparator, version, Boolean.getBoolean(STALE_WHILE_REVALIDATE));
+    }
+
+    /**
+     * Returns the discovered toolchains sorted using the given comparator, never <code>null</code>.
+     * <p>
+     * If {@code staleWhileRevalidate} is {@code true} and the cache is not empty, the cached toolchains are
+     * returned immediately, without checking whether the JDKs have been modified or new JDKs have been installed.
+     * The install directories are then scanned and the modified JDKs probed in a background thread, so that the
+     * cache is up-to-date for the next build. If the caller iterates past the cached toolchains, for instance
+     * because none of them matches its requirements, they are followed by the toolchains of a regular discovery.
+     *
+     * @param comparator the comparator
+     * @param version the version requirement, or {@code null}
+     * @param staleWhileRevalidate whether to return the cached toolchains without validating them
+     * @since 3.3.1
+     */
+    public Stream<ToolchainModel> discoverToolchainsLazily(
+            String comparator, String version, boolean staleWhileRevalidate) {
         try {
-            Set<Path> jdks = findJdks();
-            log.info("Found " + jdks.size() + " possible jdks: " + jdks);
+            long timeout = getTimeout(DISCOVER_TIMEOUT, DEFAULT_DISCOVER_TIMEOUT);
+            long deadline = timeout > 0 ? System.nanoTime() + timeout : 0;
+            Comparator<ToolchainModel> c = getToolchainModelComparator(comparator);
             readCache();
-            Map<Path, Map<String, String>> flags = new HashMap<>();
-            Path currentJdkHome = getCanonicalPath(Paths.get(System.getProperty(JAVA_HOME)));
-            flags.computeIfAbsent(currentJdkHome, p -> new HashMap<>()).put(CURRENT, "true");
-            // check environment variables for JAVA{xx}_HOME
-            System.getenv().entrySet().stream()
-                    .filter(e -> e.getKey().startsWith("JAVA") && e.getKey().endsWith("_HOME"))
-                    .forEach(e -> {
-                        Path path = getCanonicalPath(Paths.get(e.getValue()));
-                        Map<String, String> f = flags.computeIfAbsent(path, p -> new HashMap<>());
-                        String val = f.getOrDefault(ENV, "");
-                        f.put(ENV, (val.isEmpty() ? "" : val + ",") + e.getKey());
-                    });
-
-            List<ToolchainModel> tcs = jdks.parallelStream()
-                    .map(s -> {
-                        ToolchainModel tc = getToolchainModel(s);
-                        flags.getOrDefault(s, Collections.emptyMap())
-                                .forEach((k, v) -> tc.getProvides().setProperty(k, v));
-                        String version = tc.getProvides().getProperty(VERSION);
-                        if (isLts(version)) {
-                            tc.getProvides().setProperty(LTS, "true");
+            if (staleWhileRevalidate) {
+                Map<Path, ToolchainModel> cached = cache.getToolchains();
+                if (!cached.isEmpty()) {
+                    metrics.recordCacheHits(cached.size());
+                    log.debug("Using " + cached.size() + " cached JDK toolchains, revalidating them in background");
+                    revalidateInBackground(comparator, c);
+                    Map<Path, Map<String, String>> flags = getFlags();
+                    Iterator<ToolchainModel> stale = cached.entrySet().stream()
+                            .map(e -> withFlags(flags.getOrDefault(e.getKey(), Collections.emptyMap()), e.getValue()))
+                            .sorted(c)
+                            .iterator();
+                    return stream(new StaleDiscovery(stale, () -> {
+                        try {
+                            return discover(comparator, c, version, deadline);
+                        } catch (Exception e) {
+                            warnDiscoveryError(e);
+                            return Collections.emptyIterator();
                         }
-                        return tc;
-                    })
-                    .sorted(getToolchainModelComparator(comparator))
-                    .collect(Collectors.toList());
-            writeCache();
-            PersistedToolchains ps = new PersistedToolchains();
-            ps.setToolchains(tcs);
-            return ps;
-        } catch (Exception e) {
-            if (log.isDebugEnabled()) {
-                log.warn("Error discovering toolchains: " + e, e);
-            } else {
-                log.warn("Error discovering toolchains (enable debug level for more information): " + e);
+                    }));
+                }
             }
-            return new PersistedToolchains();
+            return stream(discover(comparator, c, version, deadline));
+        } catch (Exception e) {
+            warnDiscoveryError(e);
+            return Stream.empty();
+        }
+    }
+
+    private Iterator<ToolchainModel> discover(
+            String comparator, Comparator<ToolchainModel> c, String version, long deadline) {
+        Set<Path> jdks = findJdks();
+        log.info("Found " + jdks.size() + " possible jdks: " + jdks);
+        // store the content of the install directories, the probed JDKs are stored by each probe
+        writeCache();
+        return new LazyDiscovery(jdks, getFlags(), comparator, c, version, deadline);
+    }
+
+    private static Stream<ToolchainModel> stream(Iterator<ToolchainModel> toolchains) {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(toolchains, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private void warnDiscoveryError(Exception e) {
+        if (log.isDebugEnabled()) {
+            log.warn("Error discovering toolchains: " + e, e);
+        } else {
+            log.warn("Error discovering toolchains (enable debug level for more information): " + e);
+        }
+    }
+
+    /**
+     * Scans the install directories again and probes the new and modified JDKs in a daemon thread, which stores
+     * the results in the cache. Only one revalidation runs at a time.
+     */
+    private void revalidateInBackground(String comparator, Comparator<ToolchainModel> c) {
+        if (!revalidating.compareAndSet(false, true)) {
+            return;
         }
+        Thread thread = new Thread(
+                () -> {
+                    try {
+                        Set<Path> jdks = doFindJdks();
+                        foundJdks = jdks;
+                        writeCache();
+                        long timeout = getTimeout(DISCOVER_TIMEOUT, DEFAULT_DISCOVER_TIMEOUT);
+                        long deadline = timeout > 0 ? System.nanoTime() + timeout : 0;
+                        // each probe stores its result in the cache
+                        new LazyDiscovery(jdks, getFlags(), comparator, c, null, deadline)
+                                .forEachRemaining(tc -> {});
+                        log.debug("Revalidated " + jdks.size() + " JDK toolchains");
+                    } catch (Exception e) {
+                        log.debug("Error revalidating JDK toolchains: " + e, e);
+                    } finally {
+                        revalidating.set(false);
+                    }
+                },
+                "toolchain-discoverer-revalidate");
+        // the revalidation is best effort, it must not prevent the JVM from exiting
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Computes the {@value #CURRENT} and {@value #ENV} flags, which do not depend on probing the JDKs.
+     */
+    static Map<Path, Map<String, String>> getFlags() {
+        Map<Path, Map<String, String>> flags = new HashMap<>();
+        Path currentJdkHome = getCanonicalPath(Paths.get(System.getProperty(JAVA_HOME)));
+        flags.computeIfAbsent(currentJdkHome, p -> new HashMap<>()).put(CURRENT, "true");
+        // check environment variables for JAVA{xx}_HOME
+        System.getenv().entrySet().stream()
+                .filter(e -> e.getKey().startsWith("JAVA") && e.getKey().endsWith("_HOME"))
+                .forEach(e -> {
+                    Path path = getCanonicalPath(Paths.get(e.getValue()));
+                    Map<String, String> f = flags.computeIfAbsent(path, p -> new HashMap<>());
+                    String val = f.getOrDefault(ENV, "");
+                    f.put(ENV, (val.isEmpty() ? "" : val + ",") + e.getKey());
+                });
+        return flags;
     }
 
-    private static boolean isLts(String version) {
-        return Stream.of("1.8", "8", "11", "17", "21", "25")
-                .anyMatch(v -> version.equals(v) || version.startsWith(v + "."));
+    /**
+     * Sets the given {@value #CURRENT} and {@value #ENV} flags and the {@value #LTS} flag on the given model.
+     */
+    static ToolchainModel withFlags(Map<String, String> flags, ToolchainModel tc) {
+        flags.forEach((k, v) -> tc.getProvides().setProperty(k, v));
+        String version = tc.getProvides().getProperty(VERSION);
+        if (version != null && JdkVersion.of(version).isLts()) {
+            tc.getProvides().setProperty(LTS, "true");
+        }
+        return tc;
     }
 
     private synchronized void readCache() {
         if (cache == null) {
+            boolean binary = CACHE_FORMAT_BINARY.equalsIgnoreCase(System.getProperty(CACHE_FORMAT));
+            DiscoveryCache c = new DiscoveryCache(getCacheFile(), getIndexFile(), binary ? getBinaryFile() : null);
+            long start = System.nanoTime();
+            Object event = DiscoveryEvents.beginCacheLoad();
+            c.load();
+            DiscoveryEvents.endCacheLoad(event, getCacheFile());
+            metrics.record(DiscoveryMetrics.CACHE_READ, start);
+            cache = c;
+        }
+    }
+
+    private void writeCache() {
+        long start = System.nanoTime();
+        Object event = DiscoveryEvents.beginCacheStore();
+        cache.store();
+        DiscoveryEvents.endCacheStore(event, getCacheFile());
+        metrics.record(DiscoveryMetrics.CACHE_WRITE, start);
+    }
+
+    /**
+     * Returns the timings and counters of the discoveries made by this discoverer during the given session. The
+     * metrics are reset when they are first requested for a session, so that a discoverer reused across builds,
+     * such as in the Maven daemon, only reports the work done for the current build.
+     */
+    DiscoveryMetrics getMetrics(MavenSession session) {
+        SessionData data = session.getRepositorySession().getData();
+        // the discoverer of a core extension is another instance of another class, which must not share the metrics
+        String key = DiscoveryMetrics.class.getName() + "@" + System.identityHashCode(this);
+        synchronized (data) {
+            Object current = data.get(key);
+            if (current instanceof DiscoveryMetrics) {
+                return (DiscoveryMetrics) current;
+            }
+            DiscoveryMetrics sessionMetrics = new DiscoveryMetrics();
+            metrics = sessionMetrics;
+            data.set(key, sessionMetrics);
+            return sessionMetrics;
+        }
+    }
+
+    /**
+     * Returns the timeout in nanoseconds from the given system property expressed in seconds,
+     * or {@code 0} if there is no timeout.
+     */
+    private static long getTimeout(String property, long defaultSeconds) {
+        long seconds = Long.getLong(property, defaultSeconds);
+        return seconds > 0 ? TimeUnit.SECONDS.toNanos(seconds) : 0;
+    }
+
+    /**
+     * Compute the number of threads used to probe JDKs, either from the {@value #DISCOVER_THREADS}
+     * system property, or from the number of available processors.
+     */
+    static int getProbeThreads(int candidates) {
+        int threads = Integer.getInteger(DISCOVER_THREADS, 0);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, Math.min(threads, candidates));
+    }
+
+    /**
+     * Creates the executor probing the JDKs, whose threads are only kept while discovering.
+     */
+    private static ExecutorService newProbeExecutor() {
+        int threads = getProbeThreads(Integer.MAX_VALUE);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ProbeThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Get the model of the given JDK from the cache, or probe it. Concurrent probes of the same JDK in this JVM
+     * share the probe in progress.
+     *
+     * @return the model, or {@code null} if the JDK could not be probed
+     */
+    ToolchainModel getToolchainModel(Path jdk) {
+        CompletableFuture<ToolchainModel> probe = new CompletableFuture<>();
+        CompletableFuture<ToolchainModel> inProgress = probesInProgress.putIfAbsent(jdk, probe);
+        if (inProgress != null) {
+            try {
+                ToolchainModel model = inProgress.get();
+                return model != null ? model.clone() : null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.debug("JDK toolchain discovered at " + jdk + " will be ignored: interrupted");
+                return null;
+            } catch (ExecutionException e) {
+                log.debug("JDK toolchain discovered at " + jdk + " will be ignored: " + e.getCause());
+                return null;
+            }
+        }
+        try {
+            ToolchainModel model = doGetCachedToolchainModel(jdk);
+            probe.complete(model != null ? model.clone() : null);
+            return model;
+        } catch (RuntimeException e) {
+            probe.completeExceptionally(e);
+            throw e;
+        } finally {
+            probesInProgress.remove(jdk, probe);
+        }
+    }
+
+    private ToolchainModel doGetCachedToolchainModel(Path jdk) {
+        String fingerprint = fingerprint(jdk);
+        if (isKnownInvalid(jdk, fingerprint)) {
+            return null;
+        }
+        ToolchainModel model = cache.getToolchain(jdk, fingerprint);
+        if (model == null) {
+            Object event = null;
+            Closeable lock = null;
             try {
-                cache = new ConcurrentHashMap<>();
-                cacheModified = false;
-                Path cacheFile = getCacheFile();
-                if (Files.isRegularFile(cacheFile)) {
-                    try (Reader r = Files.newBufferedReader(cacheFile)) {
-                        PersistedToolchains pt = new MavenToolchainsXpp3Reader().read(r, false);
-                        cache = pt.getToolchains().stream()
-                                // Remove stale entries
-                                .filter(tc -> {
-                                    // If the bin/java executable is not available anymore, remove this TC
-                                    if (!hasJavaC(getJdkHome(tc))) {
-                                        cacheModified = true;
-                                        return false;
-                                    } else {
-                                        return true;
-                                    }
-                                })
-                                .collect(Collectors.toConcurrentMap(this::getJdkHome, Function.identity()));
+                lock = cache.lockToolchain(jdk, getProbeLockTimeout());
+                // another process may have probed the JDK while we were waiting for the lock
+                long start = System.nanoTime();
+                cache.refresh();
+                metrics.record(DiscoveryMetrics.CACHE_READ, start);
+                if (isKnownInvalid(jdk, fingerprint)) {
+                    return null;
+                }
+                model = cache.getToolchain(jdk, fingerprint);
+                if (model == null) {
+                    start = System.nanoTime();
+                    event = DiscoveryEvents.beginProbe();
+                    model = doGetToolchainModel(jdk);
+                    DiscoveryEvents.endProbe(event, jdk, model != null ? "valid" : "invalid");
+                    event = null;
+                    metrics.recordProbe(jdk, start);
+                    if (model != null) {
+                        cache.putToolchain(jdk, fingerprint, model);
+                    } else {
+                        cache.putInvalid(jdk, fingerprint);
                     }
+                    // the lock is released once the result is available to the processes waiting for it
+                    probeResults.store(lock);
+                    lock = null;
                 }
-            } catch (IOException | XmlPullParserException e) {
-                log.debug("Error reading toolchains cache: " + e, e);
+            } catch (IOException | TimeoutException e) {
+                DiscoveryEvents.endProbe(event, jdk, "failed");
+                // do not remember the failure, it may be transient
+                log.debug("JDK toolchain discovered at " + jdk + " will be ignored: error executing java: " + e);
+                return null;
+            } catch (InterruptedException e) {
+                DiscoveryEvents.endProbe(event, jdk, "interrupted");
+                Thread.currentThread().interrupt();
+                log.debug("JDK toolchain discovered at " + jdk + " will be ignored: interrupted");
+                return null;
+            } finally {
+                release(lock);
             }
         }
+        return model;
     }
 
-    private synchronized void writeCache() {
-        if (cacheModified) {
+    private void release(Closeable lock) {
+        if (lock != null) {
             try {
-                Path cacheFile = getCacheFile();
-                Files.createDirectories(cacheFile.getParent());
-                try (Writer w = Files.newBufferedWriter(cacheFile)) {
-                    PersistedToolchains pt = new PersistedToolchains();
-                    pt.setToolchains(cache.values().stream()
-                            .map(tc -> {
-                                ToolchainModel model = tc.clone();
-                                // Remove transient information
-                                model.getProvides().remove(CURRENT);
-                                model.getProvides().remove(ENV);
-                                return model;
-                            })
-                            .sorted(version().thenComparing(vendor()))
-                            .collect(Collectors.toList()));
-                    new MavenToolchainsXpp3Writer().write(w, pt);
-                }
+                lock.close();
             } catch (IOException e) {
-                log.debug("Error writing toolchains cache: " + e, e);
+                log.debug("Error releasing the lock of a JDK toolchain: " + e, e);
             }
-            cacheModified = false;
         }
     }
 
-    ToolchainModel getToolchainModel(Path jdk) {
-        ToolchainModel model = cache.get(jdk);
-        if (model == null) {
-            model = doGetToolchainModel(jdk);
-            if (model != null) {
-                cache.put(jdk, model);
-                cacheModified = true;
-            }
+    /**
+     * The time to wait for another process probing the same JDK, which is slightly longer than the probe timeout.
+     */
+    private static long getProbeLockTimeout() {
+        long timeout = getTimeout(PROBE_TIMEOUT, DEFAULT_PROBE_TIMEOUT);
+        return timeout > 0
+                ? TimeUnit.NANOSECONDS.toMillis(timeout) + TimeUnit.SECONDS.toMillis(5)
+                : TimeUnit.SECONDS.toMillis(DEFAULT_DISCOVER_TIMEOUT);
+    }
+
+    /**
+     * Checks if the given directory has already been rejected and has not been modified since.
+     */
+    private boolean isKnownInvalid(Path jdk, String fingerprint) {
+        if (cache.isInvalid(jdk, fingerprint)) {
+            log.debug("JDK toolchain discovered at " + jdk + " will be ignored: it has been rejected previously");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Computes a cheap fingerprint of the given JDK from the attributes of its {@code bin/java} executable,
+     * including whether it can be executed, and {@code release} file, so that in-place upgrades and fixed
+     * permissions can be detected without probing the JDK.
+     */
+    static String fingerprint(Path jdk) {
+        Path bin = jdk.resolve("bin");
+        Path java = Files.exists(bin.resolve("java.exe")) ? bin.resolve("java.exe") : bin.resolve("java");
+        return fileFingerprint(java) + (java.toFile().canExecute() ? ":x" : "") + "|"
+                + fileFingerprint(jdk.resolve(RELEASE));
+    }
+
+    private static String fileFingerprint(Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return attrs.lastModifiedTime().toMillis() + ":" + attrs.size()
+                    + (attrs.fileKey() != null ? ":" + attrs.fileKey() : "");
+        } catch (IOException e) {
+            return "-";
         }
-        return model;
     }
 
     private static Path getCacheFile() {
         return Paths.get(System.getProperty(USER_HOME)).resolve(DISCOVERED_TOOLCHAINS_CACHE_XML);
     }
 
+    private static Path getIndexFile() {
+        return Paths.get(System.getProperty(USER_HOME)).resolve(DISCOVERED_TOOLCHAINS_INDEX_PROPERTIES);
+    }
+
+    private static Path getBinaryFile() {
+        return Paths.get(System.getProperty(USER_HOME)).resolve(DISCOVERED_TOOLCHAINS_CACHE_BIN);
+    }
+
     public Path getJdkHome(ToolchainModel toolchain) {
         Xpp3Dom dom = (Xpp3Dom) toolchain.getConfiguration();
         Xpp3Dom javahome = dom != null ? dom.getChild(JDK_HOME) : null;
@@ -257,7 +707,15 @@ public class ToolchainDiscoverer {
         return Paths.get(Objects.requireNonNull(jdk));
     }
 
-    ToolchainModel doGetToolchainModel(Path jdk) {
+    /**
+     * Probe the given JDK.
+     *
+     * @return the model, or {@code null} if the directory does not contain a valid JDK, which is remembered until
+     *         its fingerprint changes
+     * @throws IOException if the JDK could not be probed, which may be transient
+     * @throws TimeoutException if the JDK could not be probed in time
+     */
+    ToolchainModel doGetToolchainModel(Path jdk) throws IOException, InterruptedException, TimeoutException {
         Path java = jdk.resolve("bin").resolve("java");
         if (!Files.exists(java)) {
             java = jdk.resolve("bin").resolve("java.exe");
@@ -272,32 +730,10 @@ public class ToolchainDiscoverer {
                     + " will be ignored: the bin/java or bin\\java.exe is not executable");
             return null;
         }
-        List<String> lines;
-        try {
-            Path temp = Files.createTempFile("jdk-opts-", ".out");
-            try {
-                new ProcessBuilder()
-                        .command(java.toString(), "-XshowSettings:properties", "-version")
-                        .redirectError(temp.toFile())
-                        .start()
-                        .waitFor();
-                lines = Files.readAllLines(temp);
-            } finally {
-                Files.delete(temp);
-            }
-        } catch (IOException | InterruptedException e) {
-            log.debug("JDK toolchain discovered at " + jdk + " will be ignored: error executing java: " + e);
-            return null;
+        Map<String, String> properties = readReleaseFile(jdk);
+        if (properties == null) {
+            properties = readJavaProperties(jdk, java);
         }
-
-        Map<String, String> properties = new LinkedHashMap<>();
-        Stream.of(PROPERTIES).forEach(name -> {
-            lines.stream()
-                    .filter(l -> l.contains(JAVA + name))
-                    .map(l -> l.replaceFirst(".*=\\s*(.*)", "$1"))
-                    .findFirst()
-                    .ifPresent(value -> properties.put(name, value));
-        });
         if (!properties.containsKey(VERSION)) {
             log.debug("JDK toolchain discovered at " + jdk + " will be ignored: could not obtain " + JAVA + VERSION);
             return null;
@@ -314,6 +750,178 @@ public class ToolchainDiscoverer {
         return model;
     }
 
+    /**
+     * Read the JDK properties from the {@code release} file, without starting a process.
+     * Only JDK 9+ release files are used, as older ones do not reliably provide the same values as the
+     * running JVM. For runtimes whose {@code java.runtime.name} cannot be deduced from the implementor,
+     * {@code null} is returned so that the caller falls back to forking the java executable.
+     *
+     * @return the properties, or {@code null} if the release file is missing or incomplete
+     */
+    Map<String, String> readReleaseFile(Path jdk) {
+        Path release = jdk.resolve(RELEASE);
+        if (!Files.isRegularFile(release)) {
+            return null;
+        }
+        Map<String, String> values = new HashMap<>();
+        try (Stream<String> lines = Files.lines(release, StandardCharsets.UTF_8)) {
+            lines.forEach(l -> {
+                int idx = l.indexOf('=');
+                if (idx > 0) {
+                    String value = l.substring(idx + 1).trim();
+                    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                        value = value.substring(1, value.length() - 1);
+                    }
+                    values.put(l.substring(0, idx).trim(), value);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            log.debug("Unable to read " + release + ": " + e);
+            return null;
+        }
+        String version = values.get("JAVA_VERSION");
+        String runtimeVersion = values.get("JAVA_RUNTIME_VERSION");
+        String implementor = values.get("IMPLEMENTOR");
+        if (version == null || version.startsWith("1.") || runtimeVersion == null || implementor == null) {
+            log.debug("JDK toolchain discovered at " + jdk + " has an incomplete release file");
+            return null;
+        }
+        if (!OPENJDK_RUNTIME_IMPLEMENTORS.contains(implementor)) {
+            log.debug("JDK toolchain discovered at " + jdk + " has an unknown runtime name for " + implementor);
+            return null;
+        }
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put(VERSION, version);
+        properties.put(RUNTIME_NAME, OPENJDK_RUNTIME_NAME);
+        properties.put(RUNTIME_VERSION, runtimeVersion);
+        properties.put(VENDOR, implementor);
+        Optional.ofNullable(values.get("IMPLEMENTOR_VERSION")).ifPresent(v -> properties.put(VENDOR_VERSION, v));
+        return properties;
+    }
+
+    /**
+     * Read the JDK properties by running {@code java -XshowSettings:properties -version}. The output is parsed
+     * while it is printed, and the process is killed as soon as all the properties have been read.
+     *
+     * @return the properties
+     * @throws IOException if the java executable could not be run or failed
+     * @throws TimeoutException if the java executable did not complete in time
+     */
+    Map<String, String> readJavaProperties(Path jdk, Path java)
+            throws IOException, InterruptedException, TimeoutException {
+        metrics.recordFork();
+        List<String> command = new ArrayList<>();
+        command.add(java.toString());
+        // options unknown to older or newer JVMs must not make the probe fail
+        command.add("-XX:+IgnoreUnrecognizedVMOptions");
+        Stream.of(System.getProperty(PROBE_OPTIONS, DEFAULT_PROBE_OPTIONS).trim().split("\\s+"))
+                .filter(option -> !option.isEmpty())
+                .forEach(command::add);
+        command.add("-XshowSettings:properties");
+        command.add("-version");
+        Process process = new ProcessBuilder().command(command).start();
+        try {
+            process.getOutputStream().close();
+            // read from another thread, so that a process which does not print anything can time out
+            Future<Map<String, String>> output = PROBE_READERS.submit(() -> readJavaProperties(process));
+            long timeout = getTimeout(PROBE_TIMEOUT, DEFAULT_PROBE_TIMEOUT);
+            Map<String, String> properties;
+            try {
+                properties = timeout == 0 ? output.get() : output.get(timeout, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                output.cancel(true);
+                throw new TimeoutException(
+                        "java did not complete in " + TimeUnit.NANOSECONDS.toSeconds(timeout) + "s");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+            if (!properties.containsKey(VERSION)) {
+                // the output has been read until the end: only a successful run means that the JDK is not valid,
+                // a JVM which could not start, for example because of memory pressure, may start next time
+                if (!process.waitFor(1, TimeUnit.SECONDS)) {
+                    throw new IOException("java closed its output without exiting");
+                }
+                if (process.exitValue() != 0) {
+                    throw new IOException("java exited with code " + process.exitValue());
+                }
+            }
+            return properties;
+        } finally {
+            process.destroyForcibly();
+            // a child of the process may keep the pipe open, closing it unblocks the reader
+            try {
+                process.getErrorStream().close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Parse the properties printed by the given process in a single pass, stopping as soon as all the
+     * properties have been read.
+     */
+    private static Map<String, String> readJavaProperties(Process process) throws IOException, InterruptedException {
+        Set<String> wanted = new HashSet<>(Arrays.asList(PROPERTIES));
+        Map<String, String> values = new HashMap<>();
+        InputStream in = process.getErrorStream();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (values.size() < wanted.size()) {
+            // only read what is available: a read blocked on a pipe kept open by a child of the process could
+            // neither be interrupted nor unblocked by closing the stream. The process is checked first, so that
+            // the output printed just before it exits is still read.
+            boolean alive = process.isAlive();
+            int available = in.available();
+            if (available == 0) {
+                if (!alive) {
+                    break;
+                }
+                Thread.sleep(PROBE_POLL_MILLIS);
+                continue;
+            }
+            int read = in.read(buffer, 0, Math.min(available, buffer.length));
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    parseJavaProperty(new String(line.toByteArray(), StandardCharsets.UTF_8), wanted, values);
+                    line.reset();
+                } else {
+                    line.write(buffer[i]);
+                }
+            }
+        }
+        parseJavaProperty(new String(line.toByteArray(), StandardCharsets.UTF_8), wanted, values);
+        Map<String, String> properties = new LinkedHashMap<>();
+        Stream.of(PROPERTIES).filter(values::containsKey).forEach(name -> properties.put(name, values.get(name)));
+        return properties;
+    }
+
+    private static void parseJavaProperty(String line, Set<String> wanted, Map<String, String> values) {
+        int idx = line.indexOf('=');
+        if (idx > 0) {
+            String key = line.substring(0, idx).trim();
+            if (key.startsWith(JAVA)) {
+                String name = key.substring(JAVA.length());
+                if (wanted.contains(name)) {
+                    values.putIfAbsent(name, line.substring(idx + 1).trim());
+                }
+            }
+        }
+    }
+
+    private Path canonicalize(Path path) {
+        long start = System.nanoTime();
+        Path canonical = getCanonicalPath(path);
+        metrics.record(DiscoveryMetrics.CANONICALIZE, start);
+        return canonical;
+    }
+
     private static Path getCanonicalPath(Path path) {
         try {
             return path.toRealPath();
@@ -322,12 +930,17 @@ public class ToolchainDiscoverer {
         }
     }
 
+    /**
+     * Returns the comparator for the given comma separated list of comparators, which is parsed once.
+     */
     Comparator<ToolchainModel> getToolchainModelComparator(String comparator) {
-        Comparator<ToolchainModel> c = null;
-        for (String part : comparator.split(COMMA)) {
-            c = c == null ? getComparator(part) : c.thenComparing(getComparator(part));
-        }
-        return c;
+        return comparators.computeIfAbsent(comparator, k -> {
+            Comparator<ToolchainModel> c = null;
+            for (String part : k.split(COMMA)) {
+                c = c == null ? getComparator(part) : c.thenComparing(getComparator(part));
+            }
+            return c;
+        });
     }
 
     private Comparator<ToolchainModel> getComparator(String part) {
@@ -365,36 +978,19 @@ public class ToolchainDiscoverer {
     }
 
     Comparator<ToolchainModel> version() {
-        return comparing((ToolchainModel tc) -> tc.getProvides().getProperty(VERSION), (v1, v2) -> {
-                    String[] a = v1.split("\\.");
-                    String[] b = v2.split("\\.");
-                    int length = Math.min(a.length, b.length);
-                    for (int i = 0; i < length; i++) {
-                        String oa = a[i];
-                        String ob = b[i];
-                        if (!Objects.equals(oa, ob)) {
-                            // A null element is less than a non-null element
-                            if (oa == null || ob == null) {
-                                return oa == null ? -1 : 1;
-                            }
-                            int v = oa.compareTo(ob);
-                            if (v != 0) {
-                                return v;
-                            }
-                        }
-                    }
-                    return a.length - b.length;
-                })
-                .reversed();
+        return comparing((ToolchainModel tc) -> JdkVersion.of(tc.getProvides().getProperty(VERSION))).reversed();
     }
 
-    private Set<Path> findJdks() {
+    Set<Path> findJdks() {
+        readCache();
         if (foundJdks == null) {
             synchronized (this) {
                 if (foundJdks == null) {
                     foundJdks = doFindJdks();
                 }
             }
+        } else if (watcher != null) {
+            applyWatchedChanges();
         }
         return foundJdks;
     }
@@ -405,6 +1001,28 @@ public class ToolchainDiscoverer {
      * @return a set of path where JDKs were found.
      */
     private Set<Path> doFindJdks() {
+        long start = System.nanoTime();
+        Map<Path, List<Path>> jdksByDir = new LinkedHashMap<>();
+        List<Path> installDirs = getInstallDirs();
+        List<String> roots = getRoots();
+        if (isWatchEnabled()) {
+            startWatching(installDirs, roots);
+        }
+        for (Path dir : installDirs) {
+            jdksByDir.put(dir, scanInstallDir(dir, isMacOs()));
+        }
+        installDirJdks = jdksByDir;
+        rootJdks = scanRoots(roots);
+        Set<Path> jdks = collectJdks(jdksByDir, rootJdks);
+        metrics.record(DiscoveryMetrics.SCAN, start);
+        return jdks;
+    }
+
+    /**
+     * Returns the JDKs found in the install directories and below the additional roots, the current JDK and the
+     * JDKs pointed to by {@code JAVA{xx}_HOME} environment variables.
+     */
+    private Set<Path> collectJdks(Map<Path, List<Path>> jdksByDir, Map<String, Set<Path>> jdksByRoot) {
         List<Path> dirsToTest = new ArrayList<>();
 
         // add current JDK
@@ -416,6 +1034,113 @@ public class ToolchainDiscoverer {
                 .map(e -> Paths.get(e.getValue()))
                 .forEach(dirsToTest::add);
 
+        Set<Path> jdks = new HashSet<>();
+        jdksByDir.values().forEach(jdks::addAll);
+        jdksByRoot.values().forEach(jdks::addAll);
+
+        // only keep directories that have a javac file
+        dirsToTest.stream()
+                .filter(ToolchainDiscoverer::hasJavaC)
+                .map(this::canonicalize)
+                .forEach(jdks::add);
+        return jdks;
+    }
+
+    private static boolean isMacOs() {
+        return System.getProperty("os.name").toLowerCase(Locale.ROOT).startsWith("mac");
+    }
+
+    /**
+     * Checks if the install directories and the cache should be watched, which is the case by default when
+     * running in the Maven daemon.
+     */
+    private static boolean isWatchEnabled() {
+        String watch = System.getProperty(WATCH);
+        return watch != null ? Boolean.parseBoolean(watch) : System.getProperty(MVND_HOME) != null;
+    }
+
+    /**
+     * Starts watching the install directories, unless they are already watched. The revalidation thread may
+     * start watching concurrently with a discovery.
+     */
+    private synchronized void startWatching(List<Path> installDirs, List<String> roots) {
+        if (watcher == null) {
+            try {
+                DiscoveryWatcher w = new DiscoveryWatcher();
+                installDirs.forEach(w::watch);
+                roots.stream().map(InstallRootWalker::getBase).forEach(w::watch);
+                w.watch(getCacheFile().getParent());
+                watcher = w;
+            } catch (IOException e) {
+                log.debug("Unable to watch the install directories: " + e);
+            }
+        }
+    }
+
+    /**
+     * Scans the install directories which have been modified since the previous discovery again, and refreshes
+     * the cache if it has been modified by another process. Recently modified directories are scanned again
+     * even without changes, as a JDK which was being installed may have been incomplete. An additional root is
+     * walked again when an entry of the directory containing its first pattern element changes: changes deeper
+     * in the tree are only noticed by a new discoverer.
+     */
+    private synchronized void applyWatchedChanges() {
+        Set<Path> changed = watcher.poll();
+        Path cacheDir = getCacheFile().getParent();
+        if (changed.contains(cacheDir)
+                || changed.contains(getCacheFile())
+                || changed.contains(getIndexFile())
+                || changed.contains(getBinaryFile())) {
+            long start = System.nanoTime();
+            cache.refresh();
+            metrics.record(DiscoveryMetrics.CACHE_READ, start);
+        }
+        Map<Path, List<Path>> jdksByDir = new LinkedHashMap<>(installDirJdks);
+        List<Path> modified = new ArrayList<>();
+        for (Path dir : jdksByDir.keySet()) {
+            // an entry of the directory, or the directory itself, has been created or deleted
+            InstallDir indexed = cache.getInstallDir(dir);
+            if ((indexed != null && !indexed.isSettled())
+                    || changed.stream().anyMatch(p -> dir.equals(p.getParent()) || dir.equals(p))) {
+                modified.add(dir);
+            }
+        }
+        if (!modified.isEmpty()) {
+            long start = System.nanoTime();
+            log.debug("Scanning modified install directories " + modified);
+            for (Path dir : modified) {
+                // the directory may have been created, watch it before scanning it so that no change is missed
+                watcher.watch(dir);
+                jdksByDir.put(dir, scanInstallDir(dir, isMacOs()));
+            }
+            installDirJdks = jdksByDir;
+            writeCache();
+            metrics.record(DiscoveryMetrics.SCAN, start);
+        }
+        List<String> modifiedRoots = new ArrayList<>();
+        for (String root : rootJdks.keySet()) {
+            Path base = InstallRootWalker.getBase(root);
+            if (changed.stream().anyMatch(p -> base.equals(p.getParent()) || base.equals(p))) {
+                watcher.watch(base);
+                modifiedRoots.add(root);
+            }
+        }
+        if (!modifiedRoots.isEmpty()) {
+            long start = System.nanoTime();
+            log.debug("Walking modified roots " + modifiedRoots);
+            Map<String, Set<Path>> jdksByRoot = new LinkedHashMap<>(rootJdks);
+            jdksByRoot.putAll(scanRoots(modifiedRoots));
+            rootJdks = jdksByRoot;
+            metrics.record(DiscoveryMetrics.SCAN, start);
+        }
+        // the environment variables of the build may differ from the ones of the previous build
+        foundJdks = collectJdks(jdksByDir, rootJdks);
+    }
+
+    /**
+     * Returns the directories in which JDKs are installed by third-party tools or by the OS.
+     */
+    private static List<Path> getInstallDirs() {
         final Path userHome = Paths.get(System.getProperty(USER_HOME));
         List<Path> installedDirs = new ArrayList<>();
 
@@ -436,7 +1161,7 @@ public class ToolchainDiscoverer {
 
         // OS related directories
         String osname = System.getProperty("os.name").toLowerCase(Locale.ROOT);
-        boolean macos = osname.startsWith("mac");
+        boolean macos = isMacOs();
         boolean win = osname.startsWith("win");
         if (macos) {
             installedDirs.add(Paths.get("/Library/Java/JavaVirtualMachines"));
@@ -467,30 +1192,381 @@ public class ToolchainDiscoverer {
             installedDirs.add(Paths.get("/usr/lib64/jvm"));
         }
 
-        for (Path dest : installedDirs) {
-            if (Files.isDirectory(dest)) {
-                try (Stream<Path> stream = Files.list(dest)) {
-                    stream.forEach(dir -> {
-                        dirsToTest.add(dir);
-                        if (macos) {
-                            dirsToTest.add(dir.resolve("Contents").resolve("Home"));
+        return installedDirs;
+    }
+
+    /**
+     * Returns the additional roots configured using the {@value #DISCOVER_ROOTS} system property.
+     */
+    private static List<String> getRoots() {
+        return InstallRootWalker.parseRoots(
+                System.getProperty(DISCOVER_ROOTS), Paths.get(System.getProperty(USER_HOME)));
+    }
+
+    /**
+     * Walks the given additional roots. The roots and the directories matching them are walked in parallel, and
+     * the walk stops descending at the depth given by the {@value #DISCOVER_MAX_DEPTH} system property or at the
+     * first directory containing {@code bin/javac}. The result is not cached, as a deep tree cannot be validated
+     * by the modification time of a single directory.
+     */
+    private Map<String, Set<Path>> scanRoots(List<String> roots) {
+        if (roots.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        int maxDepth = Math.max(1, Integer.getInteger(DISCOVER_MAX_DEPTH, DEFAULT_DISCOVER_MAX_DEPTH));
+        InstallRootWalker walker = new InstallRootWalker(maxDepth, this::canonicalize);
+        // the walks are blocked on the file system, use as many threads as for the probes
+        ExecutorService executor =
+                Executors.newFixedThreadPool(getProbeThreads(Integer.MAX_VALUE), new ProbeThreadFactory());
+        try {
+            // the roots are walked in parallel, each event ends when its root has been walked
+            Map<String, Object> events = new HashMap<>();
+            roots.forEach(root -> events.put(root, DiscoveryEvents.beginInstallDirScan()));
+            return walker.findJdks(
+                    roots,
+                    executor,
+                    (root, jdks) -> DiscoveryEvents.endInstallDirScan(
+                            events.get(root), InstallRootWalker.getBase(root), jdks.size(), false));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyMap();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Find the JDKs installed in the given directory. The result is recorded in the index along with
+     * the modification time of the directory, so that the directory is not listed again until
+     * an installation is added or removed.
+     */
+    private List<Path> scanInstallDir(Path dir, boolean macos) {
+        long lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(dir).toMillis();
+        } catch (IOException e) {
+            // the directory does not exist
+            cache.removeInstallDir(dir);
+            return Collections.emptyList();
+        }
+        Object event = DiscoveryEvents.beginInstallDirScan();
+        InstallDir indexed = cache.getInstallDir(dir);
+        if (indexed != null && indexed.isUpToDate(lastModified)) {
+            DiscoveryEvents.endInstallDirScan(event, dir, indexed.jdks.size(), true);
+            return indexed.jdks;
+        }
+        List<Path> jdks = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.flatMap(d -> macos ? Stream.of(d, d.resolve("Contents").resolve("Home")) : Stream.of(d))
+                    .filter(ToolchainDiscoverer::hasJavaC)
+                    .map(this::canonicalize)
+                    .distinct()
+                    .forEach(jdks::add);
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+        cache.putInstallDir(dir, new InstallDir(lastModified, System.currentTimeMillis(), jdks));
+        DiscoveryEvents.endInstallDirScan(event, dir, jdks.size(), false);
+        return jdks;
+    }
+
+    static boolean hasJavaC(Path subdir) {
+        return Files.exists(subdir.resolve(Paths.get("bin", "javac")))
+                || Files.exists(subdir.resolve(Paths.get("bin", "javac.exe")));
+    }
+
+    /**
+     * Iterates over the discovered toolchains in order. JDKs which are not cached are probed using the executor of
+     * the discoverer, so that blocking on the forked processes does not starve the common fork-join pool which is
+     * shared with the rest of the build, and that concurrent discoveries do not multiply the probing threads.
+     */
+    private final class LazyDiscovery implements Iterator<ToolchainModel> {
+        private final Map<Path, Map<String, String>> flags;
+        private final List<String> parts;
+        private final long deadline;
+        private final PriorityQueue<ToolchainModel> ready;
+        /** the probes which have not completed yet, along with a model of the JDK which only contains the flags */
+        private final Map<Future<ToolchainModel>, ToolchainModel> pending = new HashMap<>();
+
+        /** the JDKs whose name denotes a version which does not match the requirement */
+        private final List<Path> deferred = new ArrayList<>();
+
+        private CompletionService<ToolchainModel> probes;
+        private ToolchainModel next;
+
+        LazyDiscovery(
+                Set<Path> jdks,
+                Map<Path, Map<String, String>> flags,
+                String comparator,
+                Comparator<ToolchainModel> c,
+                String version,
+                long deadline) {
+            this.flags = flags;
+            this.parts = Stream.of(comparator.split(COMMA))
+                    .map(part -> part.trim().toLowerCase(Locale.ROOT))
+                    .collect(Collectors.toList());
+            this.deadline = deadline;
+            this.ready = new PriorityQueue<>(c);
+            List<Path> toProbe = new ArrayList<>();
+            for (Path jdk : jdks) {
+                String fingerprint = fingerprint(jdk);
+                if (isKnownInvalid(jdk, fingerprint)) {
+                    metrics.recordCacheHit();
+                    continue;
+                }
+                ToolchainModel model = cache.getToolchain(jdk, fingerprint);
+                if (model != null) {
+                    metrics.recordCacheHit();
+                    ready.add(withFlags(jdk, model));
+                } else if (version != null && !isPlausible(jdk, version)) {
+                    metrics.recordCacheMiss();
+                    deferred.add(jdk);
+                } else {
+                    metrics.recordCacheMiss();
+                    toProbe.add(jdk);
+                }
+            }
+            if (!deferred.isEmpty()) {
+                log.debug("Deferring the probe of " + deferred + " which do not seem to match version " + version);
+            }
+            probe(toProbe);
+        }
+
+        private boolean isPlausible(Path jdk, String version) {
+            String env = flags.getOrDefault(jdk, Collections.emptyMap()).get(ENV);
+            return VersionHints.isPlausible(VersionHints.getMajorVersion(jdk, env), version);
+        }
+
+        private void probe(List<Path> toProbe) {
+            if (!toProbe.isEmpty()) {
+                log.debug("Probing " + toProbe.size() + " JDKs using up to " + getProbeThreads(toProbe.size())
+                        + " threads");
+                if (probes == null) {
+                    probes = new ExecutorCompletionService<>(probeExecutor);
+                }
+                for (Path jdk : toProbe) {
+                    ToolchainModel partial = new ToolchainModel();
+                    Xpp3Dom configuration = new Xpp3Dom("configuration");
+                    Xpp3Dom jdkHome = new Xpp3Dom(JDK_HOME);
+                    jdkHome.setValue(jdk.toString());
+                    configuration.addChild(jdkHome);
+                    partial.setConfiguration(configuration);
+                    pending.put(probes.submit(() -> getToolchainModel(jdk)), withFlags(jdk, partial));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                ToolchainModel first = ready.peek();
+                if (first != null && pending.values().stream().noneMatch(p -> mayPrecede(p, first))) {
+                    next = ready.poll();
+                } else if (pending.isEmpty() && !deferred.isEmpty()) {
+                    // the caller did not find a match amongst the other toolchains
+                    probe(new ArrayList<>(deferred));
+                    deferred.clear();
+                } else if (pending.isEmpty()) {
+                    return false;
+                } else {
+                    awaitProbe();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public ToolchainModel next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ToolchainModel model = next;
+            next = null;
+            return model;
+        }
+
+        private void awaitProbe() {
+            try {
+                Future<ToolchainModel> future = deadline > 0
+                        ? probes.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                        : probes.take();
+                if (future == null) {
+                    log.warn("JDK toolchains discovery timed out, " + pending.size() + " JDKs have not been probed");
+                    cancel();
+                    return;
+                }
+                Path jdk = getJdkHome(pending.remove(future));
+                try {
+                    ToolchainModel model = future.get();
+                    if (model != null) {
+                        ready.add(withFlags(jdk, model));
+                    }
+                } catch (ExecutionException e) {
+                    log.debug("JDK toolchain discovered at " + jdk + " will be ignored: " + e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+            }
+        }
+
+        private void cancel() {
+            // interrupt pending probes, which will kill the forked processes
+            pending.keySet().forEach(probe -> probe.cancel(true));
+            pending.clear();
+            deferred.clear();
+        }
+
+        private ToolchainModel withFlags(Path jdk, ToolchainModel tc) {
+            return ToolchainDiscoverer.withFlags(flags.getOrDefault(jdk, Collections.emptyMap()), tc);
+        }
+
+        /**
+         * Checks if a JDK which is still being probed could be sorted before the given model. Only the
+         * {@code current} and {@code env} flags are known before probing, so any other comparator
+         * which does not result in a tie is assumed to favor the JDK being probed.
+         */
+        private boolean mayPrecede(ToolchainModel probing, ToolchainModel model) {
+            for (String part : parts) {
+                switch (part) {
+                    case CURRENT:
+                    case ENV:
+                        int c = getComparator(part).compare(probing, model);
+                        if (c != 0) {
+                            return c < 0;
                         }
-                    });
-                } catch (IOException e) {
-                    // ignore
+                        break;
+                    case LTS:
+                        if (!model.getProvides().containsKey(LTS)) {
+                            return true;
+                        }
+                        break;
+                    default:
+                        return true;
                 }
             }
+            return false;
         }
+    }
 
-        // only keep directories that have a javac file
-        return dirsToTest.stream()
-                .filter(ToolchainDiscoverer::hasJavaC)
-                .map(ToolchainDiscoverer::getCanonicalPath)
-                .collect(Collectors.toSet());
+    /**
+     * Iterates over the cached toolchains, then over the toolchains of a discovery if the caller iterates past
+     * them, so that returning the cached toolchains never prevents finding a JDK installed or upgraded since they
+     * have been cached. The discovery is only started when needed, and the toolchains which are identical to a
+     * cached one are skipped.
+     */
+    private final class StaleDiscovery implements Iterator<ToolchainModel> {
+        private final Iterator<ToolchainModel> stale;
+        private final Supplier<Iterator<ToolchainModel>> discovery;
+        /** the provides of the cached toolchains which have been returned */
+        private final Map<Path, Properties> returned = new HashMap<>();
+        private Iterator<ToolchainModel> discovered;
+        private ToolchainModel next;
+
+        StaleDiscovery(Iterator<ToolchainModel> stale, Supplier<Iterator<ToolchainModel>> discovery) {
+            this.stale = stale;
+            this.discovery = discovery;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (stale.hasNext()) {
+                    next = stale.next();
+                    returned.put(getJdkHome(next), (Properties) next.getProvides().clone());
+                    continue;
+                }
+                if (discovered == null) {
+                    log.debug("None of the cached JDK toolchains is suitable, discovering JDK toolchains");
+                    discovered = discovery.get();
+                }
+                if (!discovered.hasNext()) {
+                    return false;
+                }
+                ToolchainModel model = discovered.next();
+                if (!model.getProvides().equals(returned.get(getJdkHome(model)))) {
+                    next = model;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public ToolchainModel next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ToolchainModel model = next;
+            next = null;
+            return model;
+        }
     }
 
-    private static boolean hasJavaC(Path subdir) {
-        return Files.exists(subdir.resolve(Paths.get("bin", "javac")))
-                || Files.exists(subdir.resolve(Paths.get("bin", "javac.exe")));
+    /**
+     * Writes the results of the probes to the cache. The results of the probes completed while the cache is being
+     * written are written together by the next write, instead of writing the whole cache after each probe. The
+     * locks of the probed JDKs are held until their results have been written, so that the processes waiting for
+     * a JDK read its result instead of probing it again.
+     */
+    private final class ProbeResults {
+        private final List<Closeable> locks = new ArrayList<>();
+        private boolean writing;
+
+        void store(Closeable lock) {
+            synchronized (this) {
+                locks.add(lock);
+                if (writing) {
+                    // the thread writing the cache writes this result as well
+                    return;
+                }
+                writing = true;
+            }
+            List<Closeable> written = null;
+            try {
+                while ((written = next()) != null) {
+                    try {
+                        writeCache();
+                    } finally {
+                        written.forEach(ToolchainDiscoverer.this::release);
+                    }
+                }
+            } finally {
+                if (written != null) {
+                    // the cache could not be written, let the next probe write it
+                    synchronized (this) {
+                        writing = false;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the locks of the results to write, or {@code null} if they have all been written.
+         */
+        private synchronized List<Closeable> next() {
+            if (locks.isEmpty()) {
+                writing = false;
+                return null;
+            }
+            List<Closeable> next = new ArrayList<>(locks);
+            locks.clear();
+            return next;
+        }
+    }
+
+    /**
+     * Creates daemon threads for probing JDKs, so that a stuck probe can never prevent the JVM from exiting.
+     */
+    private static class ProbeThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL = new AtomicInteger();
+        private final AtomicInteger count = new AtomicInteger();
+        private final int pool = POOL.incrementAndGet();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "toolchain-discoverer-" + pool + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+/**
+ * Guesses the major version of a JDK from the name of its directory, such as {@code 17.0.9-tem},
+ * {@code corretto-21.0.1} or {@code java-11-openjdk}, or from a {@code JAVA{xx}_HOME} environment variable
+ * pointing to it. Hints are only used to decide which JDKs to probe first, the version is always confirmed
+ * by probing the JDK.
+ *
+ * @since 3.3.1
+ */
+final class VersionHints {
+
+    private static final Pattern ENV_VERSION = Pattern.compile("JAVA(\\d+)_HOME");
+    private static final Pattern ARCH = Pattern.compile("x86_64|amd64|aarch64|arm64|x64|ppc64le|ppc64|s390x|i[3-6]86");
+    private static final Pattern JAVA_VERSION = Pattern.compile("(?:java|jdk)-?(?:1\\.)?(\\d+)");
+    private static final Pattern VERSION = Pattern.compile("(?<!\\d)(?:1\\.)?(\\d+)");
+
+    private VersionHints() {}
+
+    /**
+     * Returns the major version hinted by the given environment variables or directory name.
+     *
+     * @param jdk the JDK home
+     * @param env the comma separated names of the environment variables pointing to the JDK, or {@code null}
+     * @return the major version, or {@code 0} if unknown
+     */
+    static int getMajorVersion(Path jdk, String env) {
+        if (env != null) {
+            for (String name : env.split(",")) {
+                Matcher matcher = ENV_VERSION.matcher(name);
+                if (matcher.matches()) {
+                    return toMajorVersion(matcher.group(1));
+                }
+            }
+        }
+        Path dir = jdk;
+        if (dir.getFileName() != null
+                && "Home".equals(dir.getFileName().toString())
+                && dir.getParent() != null
+                && dir.getParent().getFileName() != null
+                && "Contents".equals(dir.getParent().getFileName().toString())) {
+            // macOS bundle
+            dir = dir.getParent().getParent();
+        }
+        if (dir == null || dir.getFileName() == null) {
+            return 0;
+        }
+        String name = ARCH.matcher(dir.getFileName().toString().toLowerCase(Locale.ROOT)).replaceAll("");
+        // favor an explicit java or jdk version over the version of the distribution
+        Matcher matcher = JAVA_VERSION.matcher(name);
+        if (matcher.find()) {
+            return toMajorVersion(matcher.group(1));
+        }
+        matcher = VERSION.matcher(name);
+        if (matcher.find()) {
+            return toMajorVersion(matcher.group(1));
+        }
+        return 0;
+    }
+
+    /**
+     * Checks if a JDK with the given major version may match the given version requirement.
+     *
+     * @param major the major version, or {@code 0} if unknown
+     * @param requirement the version requirement, using the Maven version range syntax
+     */
+    static boolean isPlausible(int major, String requirement) {
+        if (major == 0) {
+            return true;
+        }
+        try {
+            // before JDK 9, java.version is 1.x
+            VersionRange hint = VersionRange.createFromVersionSpec(
+                    major < 9
+                            ? "[1." + major + ",1." + (major + 1) + ")"
+                            : "[" + major + "," + (major + 1) + ")");
+            VersionRange range = VersionRange.createFromVersionSpec(requirement);
+            if (range.hasRestrictions()) {
+                return !range.restrict(hint).getRestrictions().isEmpty();
+            }
+            return hint.containsVersion(range.getRecommendedVersion());
+        } catch (InvalidVersionSpecificationException e) {
+            return true;
+        }
+    }
+
+    private static int toMajorVersion(String value) {
+        try {
+            int major = Integer.parseInt(value);
+            return major >= 5 && major < 100 ? major : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.nio.file.Path;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events of the JDK discovery and selection.
+ * <p>
+ * Each {@code begin} method returns a handle which must be passed to the matching {@code end} method, or
+ * {@code null} if the event is not recorded: the event types are checked before creating an event, so that nothing
+ * is allocated when recording is off.
+ *
+ * @since 3.3.1
+ */
+final class DiscoveryEvents {
+
+    private static final String PREFIX = "org.apache.maven.toolchains.";
+
+    private static final EventType INSTALL_DIR_SCAN = EventType.getEventType(InstallDirScanEvent.class);
+    private static final EventType PROBE = EventType.getEventType(ProbeEvent.class);
+    private static final EventType CACHE_LOAD = EventType.getEventType(CacheLoadEvent.class);
+    private static final EventType CACHE_STORE = EventType.getEventType(CacheStoreEvent.class);
+    private static final EventType SELECTION = EventType.getEventType(SelectionEvent.class);
+
+    private DiscoveryEvents() {}
+
+    static Object beginInstallDirScan() {
+        return INSTALL_DIR_SCAN.isEnabled() ? begin(new InstallDirScanEvent()) : null;
+    }
+
+    static void endInstallDirScan(Object event, Path dir, int jdks, boolean cached) {
+        if (event instanceof InstallDirScanEvent) {
+            InstallDirScanEvent e = (InstallDirScanEvent) event;
+            e.dir = dir.toString();
+            e.jdks = jdks;
+            e.cached = cached;
+            e.commit();
+        }
+    }
+
+    static Object beginProbe() {
+        return PROBE.isEnabled() ? begin(new ProbeEvent()) : null;
+    }
+
+    static void endProbe(Object event, Path jdk, String outcome) {
+        if (event instanceof ProbeEvent) {
+            ProbeEvent e = (ProbeEvent) event;
+            e.jdk = jdk.toString();
+            e.outcome = outcome;
+            e.commit();
+        }
+    }
+
+    static Object beginCacheLoad() {
+        return CACHE_LOAD.isEnabled() ? begin(new CacheLoadEvent()) : null;
+    }
+
+    static void endCacheLoad(Object event, Path file) {
+        if (event instanceof CacheLoadEvent) {
+            CacheLoadEvent e = (CacheLoadEvent) event;
+            e.file = file.toString();
+            e.commit();
+        }
+    }
+
+    static Object beginCacheStore() {
+        return CACHE_STORE.isEnabled() ? begin(new CacheStoreEvent()) : null;
+    }
+
+    static void endCacheStore(Object event, Path file) {
+        if (event instanceof CacheStoreEvent) {
+            CacheStoreEvent e = (CacheStoreEvent) event;
+            e.file = file.toString();
+            e.commit();
+        }
+    }
+
+    static Object beginSelection() {
+        return SELECTION.isEnabled() ? begin(new SelectionEvent()) : null;
+    }
+
+    static void endSelection(Object event, String requirements, String source, Path jdk) {
+        if (event instanceof SelectionEvent) {
+            SelectionEvent e = (SelectionEvent) event;
+            e.requirements = requirements;
+            e.source = source;
+            e.jdk = jdk != null ? jdk.toString() : null;
+            e.commit();
+        }
+    }
+
+    private static Event begin(Event event) {
+        event.begin();
+        return event;
+    }
+
+    @Name(PREFIX + "InstallDirScan")
+    @Label("JDK Install Directory Scan")
+    @Category({"Maven", "Toolchains"})
+    static final class InstallDirScanEvent extends Event {
+        @Label("Directory")
+        String dir;
+
+        @Label("JDKs")
+        int jdks;
+
+        @Label("Cached")
+        @Description("Whether the content of the directory was taken from the cache instead of listing it")
+        boolean cached;
+    }
+
+    @Name(PREFIX + "Probe")
+    @Label("JDK Probe")
+    @Category({"Maven", "Toolchains"})
+    static final class ProbeEvent extends Event {
+        @Label("JDK")
+        String jdk;
+
+        @Label("Outcome")
+        @Description("valid, invalid, failed or interrupted")
+        String outcome;
+    }
+
+    @Name(PREFIX + "CacheLoad")
+    @Label("JDK Discovery Cache Load")
+    @Category({"Maven", "Toolchains"})
+    static final class CacheLoadEvent extends Event {
+        @Label("File")
+        String file;
+    }
+
+    @Name(PREFIX + "CacheStore")
+    @Label("JDK Discovery Cache Store")
+    @Category({"Maven", "Toolchains"})
+    static final class CacheStoreEvent extends Event {
+        @Label("File")
+        String file;
+    }
+
+    @Name(PREFIX + "Selection")
+    @Label("JDK Toolchain Selection")
+    @Category({"Maven", "Toolchains"})
+    static final class SelectionEvent extends Event {
+        @Label("Requirements")
+        String requirements;
+
+        @Label("Source")
+        @Description("current, lockFile, configured, discovered, none if no JDK matches, or failed")
+        String source;
+
+        @Label("JDK")
+        String jdk;
+    }
+}
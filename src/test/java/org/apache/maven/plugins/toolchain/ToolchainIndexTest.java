@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.toolchain.DefaultToolchain;
+import org.apache.maven.toolchain.RequirementMatcherFactory;
+import org.apache.maven.toolchain.model.ToolchainModel;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToolchainIndexTest {
+
+    private static final String[] VENDORS = {"Eclipse Adoptium", "Amazon.com Inc.", "Azul Systems, Inc."};
+    private static final String[] REQUIREMENTS = {
+        "[17,18)", "[1.8,9)", "(,11]", "[11,17),[21,)", "17.0.9", "[21.0.1]", "(17,)", "[1.8,)", "[99,)"
+    };
+
+    private final Logger logger = new ConsoleLogger(Logger.LEVEL_DISABLED, "test");
+
+    @Test
+    void testSameResultAsLinearScan() {
+        Random random = new Random(0);
+        List<DefaultToolchain> toolchains = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            ToolchainModel model = new ToolchainModel();
+            model.setType("jdk");
+            int major = 8 + random.nextInt(15);
+            String version = major == 8 ? "1.8.0_" + random.nextInt(400) : major + ".0." + random.nextInt(12);
+            model.addProvide("version", version);
+            String vendor = VENDORS[random.nextInt(VENDORS.length)];
+            model.addProvide("vendor", vendor);
+            DefaultToolchain tc = new DefaultToolchain(model, "jdk", logger) {
+                @Override
+                public String findTool(String toolName) {
+                    return null;
+                }
+            };
+            // same tokens as the JDK toolchain factory
+            tc.addProvideToken("version", RequirementMatcherFactory.createVersionMatcher(version));
+            tc.addProvideToken("vendor", RequirementMatcherFactory.createExactMatcher(vendor));
+            toolchains.add(tc);
+        }
+        ToolchainIndex<DefaultToolchain> index = new ToolchainIndex<>(toolchains, Collections.emptySet());
+
+        for (String version : REQUIREMENTS) {
+            for (String vendor : new String[] {null, "eclipse adoptium", "Azul Systems, Inc.", "Oracle"}) {
+                Map<String, String> params = new HashMap<>();
+                params.put("version", version);
+                if (vendor != null) {
+                    params.put("vendor", vendor);
+                }
+                DefaultToolchain expected = toolchains.stream()
+                        .filter(tc -> tc.matchesRequirements(params))
+                        .findFirst()
+                        .orElse(null);
+                ToolchainRequirements requirements = new ToolchainRequirements(params, Collections.emptySet());
+                assertEquals(expected, index.findFirst(requirements).orElse(null), params.toString());
+                assertEquals(
+                        toolchains.stream().filter(tc -> tc.matchesRequirements(params)).count(),
+                        toolchains.stream().filter(tc -> requirements.matches(tc.getModel())).count(),
+                        params.toString());
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void testSessionIndexPerListKeys() {
+        ToolchainModel model = new ToolchainModel();
+        model.setType("jdk");
+        model.addProvide("version", "17.0.9");
+        model.addProvide("env", "JAVA17_HOME,JAVA_HOME");
+        DefaultToolchain[] toolchains = {
+            new DefaultToolchain(model, "jdk", logger) {
+                @Override
+                public String findTool(String toolName) {
+                    return null;
+                }
+            }
+        };
+        MavenSession session = new MavenSession(
+                null,
+                new DefaultRepositorySystemSession(),
+                new DefaultMavenExecutionRequest(),
+                new DefaultMavenExecutionResult());
+        Map<String, String> params = Collections.singletonMap("env", "JAVA_HOME");
+
+        // the toolchain goal does not split the provided values, unlike the select-jdk-toolchain goal
+        for (int i = 0; i < 2; i++) {
+            assertFalse(ToolchainIndex.get(session, "jdk", toolchains, Collections.emptySet())
+                    .findFirst(new ToolchainRequirements(params, Collections.emptySet()))
+                    .isPresent());
+            Set<String> listKeys = new HashSet<>(Arrays.asList("env"));
+            assertTrue(ToolchainIndex.get(session, "jdk", toolchains, listKeys)
+                    .findFirst(new ToolchainRequirements(params, listKeys))
+                    .isPresent());
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugins.toolchain.jdk.DiscoveryCache.InstallDir;
+import org.apache.maven.toolchain.model.ToolchainModel;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.JDK_HOME;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.VERSION;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class DiscoveryCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testConcurrentStoresAreMerged() throws IOException {
+        Path jdk11 = createJdk("jdk-11");
+        Path jdk17 = createJdk("jdk-17");
+        Path broken = Files.createDirectories(dir.resolve("broken"));
+
+        DiscoveryCache cache1 = newCache();
+        cache1.load();
+        DiscoveryCache cache2 = newCache();
+        cache2.load();
+
+        cache1.putToolchain(jdk11, "fp11", createModel(jdk11, "11.0.21"));
+        cache2.putToolchain(jdk17, "fp17", createModel(jdk17, "17.0.9"));
+        cache2.putInvalid(broken, "fpb");
+        cache1.store();
+        cache2.store();
+
+        // the second store has merged the entries of the first one
+        assertNotNull(cache2.getToolchain(jdk11, "fp11"));
+
+        DiscoveryCache cache = newCache();
+        cache.load();
+        assertEquals("11.0.21", cache.getToolchain(jdk11, "fp11").getProvides().getProperty(VERSION));
+        assertEquals("17.0.9", cache.getToolchain(jdk17, "fp17").getProvides().getProperty(VERSION));
+        assertNull(cache.getToolchain(jdk17, "modified"));
+        assertTrue(cache.isInvalid(broken, "fpb"));
+    }
+
+    @Test
+    void testBinaryFormat() throws IOException {
+        DiscoveryCache cache1 = newBinaryCache();
+        cache1.load();
+        for (int i = 0; i < 500; i++) {
+            Path jdk = createJdk("jdk-" + i);
+            cache1.putToolchain(jdk, "fp" + i, createModel(jdk, "17.0." + i));
+        }
+        cache1.store();
+        assertTrue(Files.isRegularFile(dir.resolve("cache.bin")));
+
+        DiscoveryCache cache = newBinaryCache();
+        cache.load();
+        for (int i = 0; i < 500; i++) {
+            Path jdk = dir.resolve("jdk-" + i);
+            ToolchainModel model = cache.getToolchain(jdk, "fp" + i);
+            assertEquals("17.0." + i, model.getProvides().getProperty(VERSION));
+            assertEquals(jdk.toString(), ((Xpp3Dom) model.getConfiguration()).getChild(JDK_HOME).getValue());
+        }
+        assertNull(cache.getToolchain(dir.resolve("jdk-0"), "modified"));
+
+        // a cache without the binary format still reads the XML file
+        DiscoveryCache xml = newCache();
+        xml.load();
+        assertNotNull(xml.getToolchain(dir.resolve("jdk-42"), "fp42"));
+    }
+
+    @Test
+    void testCorruptedBinaryFormat() throws IOException {
+        DiscoveryCache cache1 = newBinaryCache();
+        cache1.load();
+        Path jdk = createJdk("jdk-17");
+        cache1.putToolchain(jdk, "fp17", createModel(jdk, "17.0.9"));
+        cache1.store();
+
+        // the length of the first JDK home is corrupted
+        Path binary = dir.resolve("cache.bin");
+        BasicFileAttributes xml = Files.readAttributes(dir.resolve("cache.xml"), BasicFileAttributes.class);
+        byte[] content = Files.readAllBytes(binary);
+        // magic, XML modification time and size, XML file key and count
+        int offset = 4 + 8 + 8 + 4 + ByteBuffer.wrap(content).getInt(20) + 4;
+        ByteBuffer.wrap(content).putInt(offset, Integer.MAX_VALUE);
+        Files.write(binary, content);
+        assertThrows(IOException.class, () -> BinaryCacheFormat.read(binary, xml));
+        ByteBuffer.wrap(content).putInt(offset, -1);
+        Files.write(binary, content);
+        assertThrows(IOException.class, () -> BinaryCacheFormat.read(binary, xml));
+
+        // the XML file is read instead
+        DiscoveryCache cache = newBinaryCache();
+        cache.load();
+        assertNotNull(cache.getToolchain(jdk, "fp17"));
+    }
+
+    @Test
+    void testStaleBinaryFormat() throws IOException {
+        Path jdk = createJdk("jdk-17");
+        DiscoveryCache binary = newBinaryCache();
+        binary.load();
+        binary.putToolchain(jdk, "fp17", createModel(jdk, "17.0.9"));
+        binary.store();
+
+        // the XML file is written by a version without the binary format, within the same modification time tick
+        Path xmlFile = dir.resolve("cache.xml");
+        FileTime lastModified = Files.getLastModifiedTime(dir.resolve("cache.bin"));
+        DiscoveryCache xml = newCache();
+        xml.load();
+        xml.putToolchain(jdk, "fp17", createModel(jdk, "17.0.10"));
+        xml.store();
+        Files.setLastModifiedTime(xmlFile, lastModified);
+
+        DiscoveryCache cache = newBinaryCache();
+        cache.load();
+        assertEquals("17.0.10", cache.getToolchain(jdk, "fp17").getProvides().getProperty(VERSION));
+    }
+
+    @Test
+    void testLockToolchain() throws Exception {
+        Path jdk11 = createJdk("jdk-11");
+        Path jdk17 = createJdk("jdk-17");
+        DiscoveryCache cache = newCache();
+        try (Closeable lock11 = cache.lockToolchain(jdk11, 0)) {
+            // another JDK is locked independently
+            try (Closeable lock17 = cache.lockToolchain(jdk17, 0)) {
+                long start = System.nanoTime();
+                try (Closeable timedOut = cache.lockToolchain(jdk11, 100)) {
+                    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+                }
+            }
+        }
+        long start = System.nanoTime();
+        try (Closeable lock11 = cache.lockToolchain(jdk11, 10_000)) {
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        }
+
+        // the JDKs are locked within the lock file of the cache
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(
+                    new HashSet<>(Arrays.asList("jdk-11", "jdk-17", "cache.xml.lock")),
+                    files.map(f -> f.getFileName().toString()).collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    void testWriteAtomicallyKeepsPermissions() throws IOException {
+        assumeTrue(dir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        // a new file gets the default permissions
+        Path file = dir.resolve("cache.xml");
+        DiscoveryCache.writeAtomically(file, new byte[] {1});
+        Path reference = Files.createFile(dir.resolve("reference"));
+        assertEquals(Files.getPosixFilePermissions(reference), Files.getPosixFilePermissions(file));
+
+        // an existing file keeps its permissions
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+        Files.setPosixFilePermissions(file, permissions);
+        DiscoveryCache.writeAtomically(file, new byte[] {2});
+        assertEquals(permissions, Files.getPosixFilePermissions(file));
+        assertEquals(2, Files.readAllBytes(file)[0]);
+    }
+
+    @Test
+    void testStaleTempFilesAreDeleted() throws IOException {
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1));
+        Path stale = Files.createFile(dir.resolve("cache.xml.1234.tmp"));
+        Files.setLastModifiedTime(stale, old);
+        Path staleIndex = Files.createFile(dir.resolve("index.properties.5678.tmp"));
+        Files.setLastModifiedTime(staleIndex, old);
+        // being written by another process
+        Path recent = Files.createFile(dir.resolve("cache.xml.9abc.tmp"));
+        Path other = Files.createFile(dir.resolve("other.xml.1234.tmp"));
+        Files.setLastModifiedTime(other, old);
+
+        newCache().load();
+        assertFalse(Files.exists(stale));
+        assertFalse(Files.exists(staleIndex));
+        assertTrue(Files.exists(recent));
+        assertTrue(Files.exists(other));
+    }
+
+    @Test
+    void testInstallDirIndex() throws IOException {
+        Path installDir = Files.createDirectories(dir.resolve("jdks"));
+        Path jdk = createJdk("jdks/jdk-17");
+        long now = System.currentTimeMillis();
+        // the directory has not been modified for a while when it is scanned
+        Files.setLastModifiedTime(installDir, FileTime.fromMillis(now - TimeUnit.HOURS.toMillis(1)));
+        long lastModified = Files.getLastModifiedTime(installDir).toMillis();
+        DiscoveryCache cache1 = newCache();
+        cache1.load();
+        cache1.putInstallDir(installDir, new InstallDir(lastModified, now, Arrays.asList(jdk)));
+        cache1.store();
+
+        // an unchanged directory is served from the index
+        DiscoveryCache cache = newCache();
+        cache.load();
+        InstallDir indexed = cache.getInstallDir(installDir);
+        assertEquals(Arrays.asList(jdk), indexed.jdks);
+        assertTrue(indexed.isUpToDate(lastModified));
+        // a JDK has been added or removed since
+        assertFalse(indexed.isUpToDate(lastModified + 1000));
+    }
+
+    @Test
+    void testUnsettledInstallDir() throws IOException {
+        Path installDir = Files.createDirectories(dir.resolve("jdks"));
+        Path jdk = createJdk("jdks/jdk-17");
+        long now = System.currentTimeMillis();
+        // the directory has been modified shortly before being scanned, a JDK may still have been installed
+        Files.setLastModifiedTime(installDir, FileTime.fromMillis(now - TimeUnit.MINUTES.toMillis(1)));
+        long lastModified = Files.getLastModifiedTime(installDir).toMillis();
+        DiscoveryCache cache1 = newCache();
+        cache1.load();
+        cache1.putInstallDir(installDir, new InstallDir(lastModified, now, Arrays.asList(jdk)));
+        cache1.store();
+
+        // the directory is scanned again even if it has not been modified since
+        DiscoveryCache cache = newCache();
+        cache.load();
+        InstallDir indexed = cache.getInstallDir(installDir);
+        assertEquals(Arrays.asList(jdk), indexed.jdks);
+        assertFalse(indexed.isSettled());
+        assertFalse(indexed.isUpToDate(lastModified));
+    }
+
+    private DiscoveryCache newBinaryCache() {
+        return new DiscoveryCache(dir.resolve("cache.xml"), dir.resolve("index.properties"), dir.resolve("cache.bin"));
+    }
+
+    private DiscoveryCache newCache() {
+        return new DiscoveryCache(dir.resolve("cache.xml"), dir.resolve("index.properties"), null);
+    }
+
+    private Path createJdk(String name) throws IOException {
+        Path jdk = dir.resolve(name);
+        Files.createDirectories(jdk.resolve("bin"));
+        Files.createFile(jdk.resolve("bin").resolve("javac"));
+        return jdk;
+    }
+
+    private static ToolchainModel createModel(Path jdk, String version) {
+        ToolchainModel model = new ToolchainModel();
+        model.setType("jdk");
+        model.addProvide(VERSION, version);
+        Xpp3Dom configuration = new Xpp3Dom("configuration");
+        Xpp3Dom jdkHome = new Xpp3Dom(JDK_HOME);
+        jdkHome.setValue(jdk.toString());
+        configuration.addChild(jdkHome);
+        model.setConfiguration(configuration);
+        return model;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiscoveryMetricsTest {
+
+    @Test
+    void testJson() {
+        DiscoveryMetrics metrics = new DiscoveryMetrics();
+        assertTrue(metrics.toJson().contains("\"slowestProbe\": null"));
+
+        long now = System.nanoTime();
+        metrics.record(DiscoveryMetrics.SCAN, now - TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.recordProbe(Paths.get("jdk-11"), now - TimeUnit.MILLISECONDS.toNanos(100));
+        metrics.recordProbe(Paths.get("jdk-\"17\""), now - TimeUnit.MILLISECONDS.toNanos(300));
+        metrics.recordFork();
+        metrics.recordCacheHit();
+        metrics.recordCacheHits(3);
+        metrics.recordCacheMiss();
+        metrics.recordCacheMiss();
+
+        String json = metrics.toJson();
+        assertTrue(json.contains("\"scan\": {\"count\": 1, \"millis\": "), json);
+        assertTrue(json.contains("\"probe\": {\"count\": 2, \"millis\": "), json);
+        assertTrue(json.contains("\"forkedProbes\": 1,"), json);
+        assertTrue(json.contains("\"cacheHits\": 4,"), json);
+        assertTrue(json.contains("\"cacheMisses\": 2,"), json);
+        assertTrue(json.contains("\"slowestProbe\": {\"jdk\": \"jdk-\\\"17\\\"\", \"millis\": "), json);
+    }
+
+    @Test
+    void testSessionMetrics() {
+        ToolchainDiscoverer discoverer = new ToolchainDiscoverer();
+        MavenSession session1 = newSession();
+        DiscoveryMetrics metrics1 = discoverer.getMetrics(session1);
+        metrics1.recordFork();
+        assertSame(metrics1, discoverer.getMetrics(session1));
+
+        // a discoverer reused by the next build starts new metrics
+        DiscoveryMetrics metrics2 = discoverer.getMetrics(newSession());
+        assertNotSame(metrics1, metrics2);
+        assertTrue(metrics2.toJson().contains("\"forkedProbes\": 0,"));
+        assertSame(metrics1, discoverer.getMetrics(session1));
+    }
+
+    @SuppressWarnings("deprecation")
+    private static MavenSession newSession() {
+        return new MavenSession(
+                null,
+                new DefaultRepositorySystemSession(),
+                new DefaultMavenExecutionRequest(),
+                new DefaultMavenExecutionResult());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiscoveryWatcherTest {
+
+    @Test
+    void testMissingDirectory(@TempDir Path home) throws Exception {
+        Path jdks = home.resolve(".jdks");
+        DiscoveryWatcher watcher = new DiscoveryWatcher();
+        watcher.watch(jdks);
+        assertTrue(watcher.poll().isEmpty());
+
+        // the parent of the missing directory is not watched
+        Files.createDirectory(home.resolve("other"));
+        assertTrue(watcher.poll().isEmpty());
+
+        // the creation of the directory is noticed, then its entries are watched
+        Files.createDirectory(jdks);
+        assertEquals(Collections.singleton(jdks), watcher.poll());
+        Path jdk = Files.createDirectory(jdks.resolve("jdk-17"));
+        assertTrue(awaitChange(watcher, jdk));
+
+        // the directory is watched again when it is deleted and created again
+        Files.delete(jdk);
+        Files.delete(jdks);
+        assertTrue(awaitChange(watcher, jdks));
+        Files.createDirectory(jdks);
+        assertEquals(Collections.singleton(jdks), watcher.poll());
+    }
+
+    /**
+     * Polls the changes until the given path has changed, as the events are delivered asynchronously.
+     */
+    private static boolean awaitChange(DiscoveryWatcher watcher, Path path) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!watcher.poll().contains(path)) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InstallRootWalkerTest {
+
+    @Test
+    void testParseRoots() {
+        Path home = Paths.get("home");
+        assertEquals(
+                Arrays.asList("/opt/toolchains", home + "/jdks/*"),
+                InstallRootWalker.parseRoots(
+                        " /opt/toolchains " + File.pathSeparator + File.pathSeparator + "~/jdks/*", home));
+        assertTrue(InstallRootWalker.parseRoots(null, home).isEmpty());
+    }
+
+    @Test
+    void testGetBase() {
+        assertEquals(Paths.get("/opt/toolchains"), InstallRootWalker.getBase("/opt/toolchains"));
+        assertEquals(Paths.get("/opt/toolchains"), InstallRootWalker.getBase("/opt/toolchains/*/jdk-{17,21}*"));
+        assertEquals(Paths.get("/nix/store"), InstallRootWalker.getBase("/nix/store/*-jdk-*"));
+        assertEquals(Paths.get("/"), InstallRootWalker.getBase("/*"));
+        assertEquals(Paths.get("/opt/toolchains"), InstallRootWalker.getBase("//opt//toolchains//*"));
+        assertEquals(Paths.get("."), InstallRootWalker.getBase("*-jdk"));
+    }
+
+    @Test
+    void testGetPattern() {
+        assertEquals(Arrays.asList(), InstallRootWalker.getPattern("/opt/toolchains"));
+        assertEquals(
+                Arrays.asList("*", "jdk-{17,21}*"), InstallRootWalker.getPattern("/opt/toolchains/*/jdk-{17,21}*"));
+        assertEquals(Arrays.asList("*"), InstallRootWalker.getPattern("//opt//toolchains//*"));
+        assertEquals(Arrays.asList("*", "jdk"), InstallRootWalker.getPattern("/opt/./toolchains/*/./jdk/"));
+        assertEquals(Arrays.asList("*-jdk"), InstallRootWalker.getPattern("*-jdk"));
+        assertEquals(Arrays.asList("*-jdk"), InstallRootWalker.getPattern("./*-jdk"));
+    }
+
+    @Test
+    void testFindJdks(@TempDir Path dir) throws Exception {
+        Path toolchains = dir.resolve("toolchains");
+        Path temurin17 = createJdk(toolchains.resolve("temurin").resolve("17"));
+        Path temurin21 = createJdk(toolchains.resolve("temurin").resolve("21"));
+        Path zulu11 = createJdk(toolchains.resolve("zulu").resolve("11"));
+        // below a JDK, not reached
+        createJdk(temurin17.resolve("lib").resolve("nested"));
+        // too deep
+        createJdk(toolchains.resolve("a").resolve("b").resolve("c").resolve("jdk"));
+
+        Path store = dir.resolve("store");
+        Path nixJdk = createJdk(store.resolve("abc-openjdk-17").resolve("lib").resolve("openjdk"));
+        createJdk(store.resolve("def-maven-3").resolve("lib").resolve("openjdk"));
+        Files.createDirectories(store.resolve("ghi-openjdk-17.drv"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            InstallRootWalker walker = new InstallRootWalker(3, this::toRealPath);
+            assertEquals(set(temurin17, temurin21, zulu11), findJdks(walker, toolchains.toString(), executor));
+            assertEquals(set(temurin17, temurin21), findJdks(walker, toolchains + "/temurin/*", executor));
+            assertEquals(set(temurin21), findJdks(walker, toolchains + "/*/2*", executor));
+            assertEquals(set(nixJdk), findJdks(walker, store + "/*-openjdk-*", executor));
+            assertEquals(set(), findJdks(walker, dir.resolve("missing") + "/*", executor));
+
+            // the pattern does not depend on how the base is spelled
+            assertEquals(set(temurin17, temurin21), findJdks(walker, toolchains + "//temurin//*", executor));
+            assertEquals(set(temurin17, temurin21), findJdks(walker, toolchains + "/./temurin/./*", executor));
+            assertEquals(set(temurin17, temurin21), findJdks(walker, toolchains + "/temurin/*/", executor));
+
+            // all the roots are walked at once, each one being reported when it has been walked
+            Map<String, Set<Path>> walked = new ConcurrentHashMap<>();
+            Map<String, Set<Path>> jdksByRoot = walker.findJdks(
+                    Arrays.asList(store + "/*-openjdk-*", toolchains + "/zulu", dir.resolve("missing") + "/*"),
+                    executor,
+                    walked::put);
+            assertEquals(
+                    Arrays.asList(store + "/*-openjdk-*", toolchains + "/zulu", dir.resolve("missing") + "/*"),
+                    new ArrayList<>(jdksByRoot.keySet()));
+            assertEquals(set(nixJdk), jdksByRoot.get(store + "/*-openjdk-*"));
+            assertEquals(set(zulu11), jdksByRoot.get(toolchains + "/zulu"));
+            assertEquals(set(), jdksByRoot.get(dir.resolve("missing") + "/*"));
+            assertEquals(jdksByRoot, walked);
+
+            // only walk the directories matching the pattern, then up to the maximum depth
+            InstallRootWalker shallow = new InstallRootWalker(1, this::toRealPath);
+            assertEquals(set(), findJdks(shallow, store + "/*-openjdk-*", executor));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFindRelativeMatchingDirs() {
+        // relative to the current directory, which is the base directory of the project
+        InstallRootWalker walker = new InstallRootWalker(3, this::toRealPath);
+        assertEquals(Arrays.asList(Paths.get(".", "src")), walker.findMatchingDirs("sr*"));
+        assertEquals(Arrays.asList(Paths.get(".", "src")), walker.findMatchingDirs("./sr*"));
+        assertEquals(Arrays.asList(Paths.get("src", "main")), walker.findMatchingDirs("src/ma*"));
+    }
+
+    private static Set<Path> findJdks(InstallRootWalker walker, String root, ExecutorService executor)
+            throws InterruptedException {
+        return walker.findJdks(Collections.singletonList(root), executor, (r, jdks) -> {}).get(root);
+    }
+
+    private static Path createJdk(Path jdk) throws IOException {
+        Files.createDirectories(jdk.resolve("bin"));
+        Files.createFile(jdk.resolve("bin").resolve("javac"));
+        return jdk.toRealPath();
+    }
+
+    private Path toRealPath(Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path;
+        }
+    }
+
+    private static Set<Path> set(Path... paths) {
+        return new HashSet<>(Arrays.asList(paths));
+    }
+}
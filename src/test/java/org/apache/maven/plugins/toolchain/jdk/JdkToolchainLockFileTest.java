@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.maven.toolchain.model.ToolchainModel;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.JDK_HOME;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.LTS;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.VENDOR;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.VERSION;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JdkToolchainLockFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testLockFile() throws IOException {
+        Path jdk = dir.resolve("jdk-17");
+        Files.createDirectories(jdk.resolve("bin"));
+        Files.write(jdk.resolve("bin").resolve("java"), new byte[] {1});
+        JdkToolchainLockFile lock = new JdkToolchainLockFile(dir.resolve(".mvn").resolve("jdk-toolchain.lock"));
+        assertNull(lock.read("{version=17}"));
+
+        ToolchainModel model = new ToolchainModel();
+        model.setType("jdk");
+        model.addProvide(VERSION, "17.0.9");
+        model.addProvide(VENDOR, "Eclipse Adoptium");
+        model.addProvide(LTS, "true");
+        Xpp3Dom configuration = new Xpp3Dom("configuration");
+        Xpp3Dom jdkHome = new Xpp3Dom(JDK_HOME);
+        jdkHome.setValue(jdk.toString());
+        configuration.addChild(jdkHome);
+        model.setConfiguration(configuration);
+        lock.write("{version=17}", model);
+
+        ToolchainModel locked = lock.read("{version=17}");
+        assertNotNull(locked);
+        assertEquals("17.0.9", locked.getProvides().getProperty(VERSION));
+        assertEquals("Eclipse Adoptium", locked.getProvides().getProperty(VENDOR));
+        assertEquals("true", locked.getProvides().getProperty(LTS));
+        assertEquals(jdk.toString(), ((Xpp3Dom) locked.getConfiguration()).getChild(JDK_HOME).getValue());
+
+        // other requirements
+        assertNull(lock.read("{version=21}"));
+
+        // modified JDK
+        Files.write(jdk.resolve("bin").resolve("java"), new byte[] {1, 2});
+        assertNull(lock.read("{version=17}"));
+    }
+}
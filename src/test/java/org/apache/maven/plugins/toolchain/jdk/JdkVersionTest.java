@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.maven.toolchain.model.ToolchainModel;
+import org.junit.jupiter.api.Test;
+
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.VERSION;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JdkVersionTest {
+
+    @Test
+    void testOrder() {
+        List<String> versions = Arrays.asList("9.0.4", "17.0.10", "1.8.0_392", "22-ea", "17.0.9", "22", "11");
+        List<String> sorted = versions.stream()
+                .map(JdkVersion::of)
+                .sorted()
+                .map(JdkVersion::toString)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("1.8.0_392", "9.0.4", "11", "17.0.9", "17.0.10", "22-ea", "22"), sorted);
+        assertEquals(JdkVersion.of("17"), JdkVersion.of("17.0.0"));
+    }
+
+    @Test
+    void testFeature() {
+        assertEquals(8, JdkVersion.of("1.8.0_392").getFeature());
+        assertEquals(21, JdkVersion.of("21.0.1").getFeature());
+        assertTrue(JdkVersion.of("1.8.0_392").isLts());
+        assertTrue(JdkVersion.of("21").isLts());
+        assertFalse(JdkVersion.of("22.0.1").isLts());
+        assertFalse(JdkVersion.of("1.7.0_80").isLts());
+    }
+
+    @Test
+    void testComparator() {
+        List<String> versions = Arrays.asList("9", "17.0.9", "11.0.21", "1.8.0_392");
+        List<String> sorted = versions.stream()
+                .map(v -> {
+                    ToolchainModel model = new ToolchainModel();
+                    model.addProvide(VERSION, v);
+                    return model;
+                })
+                .sorted(new ToolchainDiscoverer().getToolchainModelComparator("version"))
+                .map(tc -> tc.getProvides().getProperty(VERSION))
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("17.0.9", "11.0.21", "9", "1.8.0_392"), sorted);
+    }
+}
@@ -18,16 +18,47 @@
  */
 package org.apache.maven.plugins.toolchain.jdk;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import org.apache.maven.toolchain.model.PersistedToolchains;
+import org.apache.maven.toolchain.model.ToolchainModel;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledOnJre;
+import org.junit.jupiter.api.condition.DisabledOnOs;
 import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.CURRENT;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.JDK_HOME;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.RUNTIME_NAME;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.RUNTIME_VERSION;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.VENDOR;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.VENDOR_VERSION;
+import static org.apache.maven.plugins.toolchain.jdk.ToolchainDiscoverer.VERSION;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ToolchainDiscovererTest {
@@ -51,4 +82,355 @@ public class ToolchainDiscovererTest {
         assertTrue(persistedToolchains.getToolchains().stream()
                 .anyMatch(tc -> tc.getProvides().containsKey(CURRENT)));
     }
+
+    @Test
+    @DisabledOnJre(JRE.JAVA_8) // java 8 often has jdk != jre
+    void testLazyDiscovery() {
+        ToolchainDiscoverer discoverer = new ToolchainDiscoverer();
+        String comparator = "current,lts,version,vendor";
+        List<ToolchainModel> toolchains = discoverer.discoverToolchainsLazily(comparator).collect(Collectors.toList());
+        List<ToolchainModel> sorted = new ArrayList<>(toolchains);
+        sorted.sort(discoverer.getToolchainModelComparator(comparator));
+        assertEquals(sorted, toolchains);
+
+        Optional<ToolchainModel> first = discoverer.discoverToolchainsLazily(comparator).findFirst();
+        assertTrue(first.isPresent());
+        assertTrue(first.get().getProvides().containsKey(CURRENT));
+    }
+
+    @Test
+    @DisabledOnJre(JRE.JAVA_8) // java 8 often has jdk != jre
+    void testStaleWhileRevalidate() {
+        String comparator = "current,lts,version,vendor";
+        List<String> expected = new ToolchainDiscoverer()
+                .discoverToolchainsLazily(comparator)
+                .map(tc -> ((Xpp3Dom) tc.getConfiguration()).getChild("jdkHome").getValue())
+                .collect(Collectors.toList());
+
+        // served from the cache written by the first discovery
+        List<ToolchainModel> stale = new ToolchainDiscoverer()
+                .discoverToolchainsLazily(comparator, null, true)
+                .collect(Collectors.toList());
+        assertEquals(
+                expected,
+                stale.stream()
+                        .map(tc -> ((Xpp3Dom) tc.getConfiguration()).getChild("jdkHome").getValue())
+                        .collect(Collectors.toList()));
+        assertTrue(stale.get(0).getProvides().containsKey(CURRENT));
+    }
+
+    @Test
+    @DisabledOnJre(JRE.JAVA_8) // java 8 often has jdk != jre
+    void testStaleWithoutMatch(@TempDir Path home) throws Exception {
+        // the only cached JDK does not match, the current JDK has not been probed yet
+        Path old = Files.createDirectories(home.resolve("old").resolve("bin")).getParent();
+        Files.createFile(old.resolve("bin").resolve("javac"));
+        ToolchainModel model = new ToolchainModel();
+        model.setType("jdk");
+        model.addProvide(VERSION, "1.0");
+        Xpp3Dom configuration = new Xpp3Dom("configuration");
+        Xpp3Dom jdkHome = new Xpp3Dom(JDK_HOME);
+        jdkHome.setValue(old.toString());
+        configuration.addChild(jdkHome);
+        model.setConfiguration(configuration);
+        DiscoveryCache cache = new DiscoveryCache(
+                home.resolve(ToolchainDiscoverer.DISCOVERED_TOOLCHAINS_CACHE_XML),
+                home.resolve(ToolchainDiscoverer.DISCOVERED_TOOLCHAINS_INDEX_PROPERTIES),
+                null);
+        cache.putToolchain(old, "fp", model);
+        cache.store();
+
+        String userHome = System.getProperty(ToolchainDiscoverer.USER_HOME);
+        System.setProperty(ToolchainDiscoverer.USER_HOME, home.toString());
+        try {
+            List<ToolchainModel> toolchains = new ToolchainDiscoverer()
+                    .discoverToolchainsLazily("current,lts,version,vendor", null, true)
+                    .collect(Collectors.toList());
+            // the cached JDK first, then the JDKs found by the discovery
+            assertEquals("1.0", toolchains.get(0).getProvides().getProperty(VERSION));
+            assertTrue(toolchains.stream().anyMatch(tc -> tc.getProvides().containsKey(CURRENT)));
+
+            Optional<ToolchainModel> current = new ToolchainDiscoverer()
+                    .discoverToolchainsLazily("current,lts,version,vendor", null, true)
+                    .filter(tc -> tc.getProvides().containsKey(CURRENT))
+                    .findFirst();
+            assertTrue(current.isPresent());
+        } finally {
+            System.setProperty(ToolchainDiscoverer.USER_HOME, userHome);
+            // let the revalidations finish writing the cache before the home is deleted
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (isRevalidating() && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static boolean isRevalidating() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(t -> t.getName().equals("toolchain-discoverer-revalidate"));
+    }
+
+    @Test
+    @DisabledOnJre(JRE.JAVA_8) // java 8 often has jdk != jre
+    void testConcurrentDiscovery() throws Exception {
+        ToolchainDiscoverer discoverer = new ToolchainDiscoverer();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> discoverer.discoverToolchains().getToolchains().stream()
+                        .map(tc -> discoverer.getJdkHome(tc).toString())
+                        .collect(Collectors.toList())));
+            }
+            List<String> expected = futures.get(0).get();
+            assertFalse(expected.isEmpty());
+            for (Future<List<String>> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void testReleaseFile(@TempDir Path jdk) throws Exception {
+        // a bin/java that cannot be run: the model must come from the release file
+        Path java = Files.createDirectories(jdk.resolve("bin")).resolve("java");
+        Files.write(java, Arrays.asList("#!/bin/sh", "exit 1"));
+        assertTrue(java.toFile().setExecutable(true));
+        Files.write(
+                jdk.resolve("release"),
+                Arrays.asList(
+                        "IMPLEMENTOR=\"Eclipse Adoptium\"",
+                        "IMPLEMENTOR_VERSION=\"Temurin-17.0.9+9\"",
+                        "JAVA_RUNTIME_VERSION=\"17.0.9+9\"",
+                        "JAVA_VERSION=\"17.0.9\""),
+                StandardCharsets.UTF_8);
+
+        ToolchainModel model = new ToolchainDiscoverer().doGetToolchainModel(jdk);
+        assertNotNull(model);
+        assertEquals("17.0.9", model.getProvides().getProperty(VERSION));
+        assertEquals("OpenJDK Runtime Environment", model.getProvides().getProperty(RUNTIME_NAME));
+        assertEquals("17.0.9+9", model.getProvides().getProperty(RUNTIME_VERSION));
+        assertEquals("Eclipse Adoptium", model.getProvides().getProperty(VENDOR));
+        assertEquals("Temurin-17.0.9+9", model.getProvides().getProperty(VENDOR_VERSION));
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void testStreamedProbe(@TempDir Path jdk) throws Exception {
+        // a bin/java that does not exit: the probe must stop once all the properties have been printed
+        Path java = Files.createDirectories(jdk.resolve("bin")).resolve("java");
+        Files.write(
+                java,
+                Arrays.asList(
+                        "#!/bin/sh",
+                        "echo \"$@\" > \"$(dirname \"$0\")/args\"",
+                        "echo 'Property settings:' >&2",
+                        "echo '    java.runtime.name = OpenJDK Runtime Environment' >&2",
+                        "echo '    java.runtime.version = 11.0.21+9' >&2",
+                        "echo '    java.vendor = Eclipse Adoptium' >&2",
+                        "echo '    java.vendor.url = https://adoptium.net/' >&2",
+                        "echo '    java.vendor.version = Temurin-11.0.21+9' >&2",
+                        "echo '    java.version = 11.0.21' >&2",
+                        "echo '    java.version.date = 2023-10-17' >&2",
+                        "exec sleep 30"));
+        assertTrue(java.toFile().setExecutable(true));
+
+        long start = System.nanoTime();
+        ToolchainModel model = new ToolchainDiscoverer().doGetToolchainModel(jdk);
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+        assertNotNull(model);
+        assertEquals("11.0.21", model.getProvides().getProperty(VERSION));
+        assertEquals("OpenJDK Runtime Environment", model.getProvides().getProperty(RUNTIME_NAME));
+        assertEquals("11.0.21+9", model.getProvides().getProperty(RUNTIME_VERSION));
+        assertEquals("Eclipse Adoptium", model.getProvides().getProperty(VENDOR));
+        assertEquals("Temurin-11.0.21+9", model.getProvides().getProperty(VENDOR_VERSION));
+
+        String args = new String(Files.readAllBytes(jdk.resolve("bin").resolve("args")), StandardCharsets.UTF_8);
+        assertTrue(args.startsWith("-XX:+IgnoreUnrecognizedVMOptions " + ToolchainDiscoverer.DEFAULT_PROBE_OPTIONS));
+        assertTrue(args.trim().endsWith("-XshowSettings:properties -version"));
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void testProbeTimeoutReleasesReader(@TempDir Path jdk) throws Exception {
+        // a bin/java whose child keeps the output open after the probe has been killed
+        Path bin = Files.createDirectories(jdk.resolve("bin"));
+        Path java = bin.resolve("java");
+        Files.write(
+                java,
+                Arrays.asList(
+                        "#!/bin/sh",
+                        "echo 'Property settings:' >&2",
+                        "sleep 60 &",
+                        "echo $! > \"$(dirname \"$0\")/child\"",
+                        "exec sleep 60"));
+        assertTrue(java.toFile().setExecutable(true));
+
+        System.setProperty(ToolchainDiscoverer.PROBE_TIMEOUT, "1");
+        try {
+            assertThrows(TimeoutException.class, () -> new ToolchainDiscoverer().readJavaProperties(jdk, java));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (isReadingProbe() && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            assertFalse(isReadingProbe());
+        } finally {
+            System.clearProperty(ToolchainDiscoverer.PROBE_TIMEOUT);
+            String child = new String(Files.readAllBytes(bin.resolve("child")), StandardCharsets.UTF_8).trim();
+            new ProcessBuilder("kill", child).start().waitFor();
+        }
+    }
+
+    private static boolean isReadingProbe() {
+        return Thread.getAllStackTraces().values().stream()
+                .flatMap(Stream::of)
+                .anyMatch(e -> e.getMethodName().equals("readJavaProperties"));
+    }
+
+    @Test
+    void testIncompleteReleaseFile(@TempDir Path jdk) throws IOException {
+        // JDK 8 release files do not reliably describe the runtime
+        Files.write(
+                jdk.resolve("release"),
+                Arrays.asList("JAVA_VERSION=\"1.8.0_392\"", "IMPLEMENTOR=\"Eclipse Adoptium\""),
+                StandardCharsets.UTF_8);
+
+        assertNull(new ToolchainDiscoverer().readReleaseFile(jdk));
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void testProbeTimeout(@TempDir Path jdk) throws IOException {
+        Path java = Files.createDirectories(jdk.resolve("bin")).resolve("java");
+        Files.write(java, Arrays.asList("#!/bin/sh", "exec sleep 30"));
+        assertTrue(java.toFile().setExecutable(true));
+
+        System.setProperty(ToolchainDiscoverer.PROBE_TIMEOUT, "1");
+        try {
+            long start = System.nanoTime();
+            assertThrows(TimeoutException.class, () -> new ToolchainDiscoverer().doGetToolchainModel(jdk));
+            assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+        } finally {
+            System.clearProperty(ToolchainDiscoverer.PROBE_TIMEOUT);
+        }
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void testRejectedUntilExecutable(@TempDir Path home) throws Exception {
+        Path jdk = home.resolve("jdk");
+        Path java = writeJava(
+                jdk,
+                "echo '    java.runtime.name = OpenJDK Runtime Environment' >&2",
+                "echo '    java.version = 11.0.21' >&2");
+        String userHome = System.getProperty(ToolchainDiscoverer.USER_HOME);
+        System.setProperty(ToolchainDiscoverer.USER_HOME, home.toString());
+        try {
+            ToolchainDiscoverer discoverer = new ToolchainDiscoverer();
+            discoverer.findJdks();
+            assertNull(discoverer.getToolchainModel(jdk));
+
+            // the permissions are fixed without modifying the file
+            assertTrue(java.toFile().setExecutable(true));
+            ToolchainDiscoverer next = new ToolchainDiscoverer();
+            next.findJdks();
+            ToolchainModel model = next.getToolchainModel(jdk);
+            assertNotNull(model);
+            assertEquals("11.0.21", model.getProvides().getProperty(VERSION));
+        } finally {
+            System.setProperty(ToolchainDiscoverer.USER_HOME, userHome);
+        }
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void testOnlyDefinitiveRejectionsAreRemembered(@TempDir Path home) throws Exception {
+        // a JVM which fails to start, and a program which exits successfully without being a JVM
+        Path failing = home.resolve("failing");
+        assertTrue(writeJava(failing, "echo run >> \"$(dirname \"$0\")/runs\"", "exit 1")
+                .toFile()
+                .setExecutable(true));
+        Path other = home.resolve("other");
+        assertTrue(writeJava(other, "echo run >> \"$(dirname \"$0\")/runs\"", "exit 0")
+                .toFile()
+                .setExecutable(true));
+        String userHome = System.getProperty(ToolchainDiscoverer.USER_HOME);
+        System.setProperty(ToolchainDiscoverer.USER_HOME, home.toString());
+        try {
+            for (int i = 0; i < 2; i++) {
+                ToolchainDiscoverer discoverer = new ToolchainDiscoverer();
+                discoverer.findJdks();
+                assertNull(discoverer.getToolchainModel(failing));
+                assertNull(discoverer.getToolchainModel(other));
+            }
+            assertEquals(2, Files.readAllLines(failing.resolve("bin").resolve("runs")).size());
+            assertEquals(1, Files.readAllLines(other.resolve("bin").resolve("runs")).size());
+        } finally {
+            System.setProperty(ToolchainDiscoverer.USER_HOME, userHome);
+        }
+    }
+
+    private static Path writeJava(Path jdk, String... lines) throws IOException {
+        Path java = Files.createDirectories(jdk.resolve("bin")).resolve("java");
+        List<String> script = new ArrayList<>();
+        script.add("#!/bin/sh");
+        script.addAll(Arrays.asList(lines));
+        Files.write(java, script);
+        return java;
+    }
+
+    @Test
+    void testWatchInstallDirs(@TempDir Path home) throws Exception {
+        String userHome = System.getProperty(ToolchainDiscoverer.USER_HOME);
+        System.setProperty(ToolchainDiscoverer.USER_HOME, home.toString());
+        System.setProperty(ToolchainDiscoverer.WATCH, "true");
+        try {
+            ToolchainDiscoverer discoverer = new ToolchainDiscoverer();
+            int count = discoverer.findJdks().size();
+
+            // a JDK installed after the first discovery, in an install directory which did not exist
+            Path jdk = home.resolve(".jdks").resolve("jdk-99");
+            Files.createDirectories(jdk.resolve("bin"));
+            Files.createFile(jdk.resolve("bin").resolve("javac"));
+            Path found = jdk.toRealPath();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (!discoverer.findJdks().contains(found) && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            assertTrue(discoverer.findJdks().contains(found));
+            assertEquals(count + 1, discoverer.findJdks().size());
+        } finally {
+            System.setProperty(ToolchainDiscoverer.USER_HOME, userHome);
+            System.clearProperty(ToolchainDiscoverer.WATCH);
+        }
+    }
+
+    @Test
+    void testDiscoverRoots(@TempDir Path dir) throws Exception {
+        Path jdk = dir.resolve("toolchains").resolve("temurin").resolve("17");
+        Files.createDirectories(jdk.resolve("bin"));
+        Files.createFile(jdk.resolve("bin").resolve("javac"));
+        System.setProperty(ToolchainDiscoverer.DISCOVER_ROOTS, dir.resolve("toolchains") + "/*");
+        try {
+            assertTrue(new ToolchainDiscoverer().findJdks().contains(jdk.toRealPath()));
+        } finally {
+            System.clearProperty(ToolchainDiscoverer.DISCOVER_ROOTS);
+        }
+    }
+
+    @Test
+    void testFingerprint(@TempDir Path jdk) throws IOException {
+        Files.createDirectories(jdk.resolve("bin"));
+        Files.write(jdk.resolve("bin").resolve("java"), Arrays.asList("java"));
+        Files.write(jdk.resolve("release"), Arrays.asList("JAVA_VERSION=\"17.0.8\""));
+        String fingerprint = ToolchainDiscoverer.fingerprint(jdk);
+        assertEquals(fingerprint, ToolchainDiscoverer.fingerprint(jdk));
+
+        // in-place upgrade
+        Files.write(jdk.resolve("release"), Arrays.asList("JAVA_VERSION=\"17.0.10\""));
+        assertNotEquals(fingerprint, ToolchainDiscoverer.fingerprint(jdk));
+    }
 }
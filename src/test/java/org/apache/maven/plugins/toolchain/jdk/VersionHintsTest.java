@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+
+import static org.apache.maven.plugins.toolchain.jdk.VersionHints.getMajorVersion;
+import static org.apache.maven.plugins.toolchain.jdk.VersionHints.isPlausible;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VersionHintsTest {
+
+    @Test
+    void testMajorVersion() {
+        assertEquals(17, getMajorVersion(Paths.get("/home/me/.sdkman/candidates/java/17.0.9-tem"), null));
+        assertEquals(21, getMajorVersion(Paths.get("/home/me/.jdks/corretto-21.0.1"), null));
+        assertEquals(11, getMajorVersion(Paths.get("/usr/lib/jvm/java-11-openjdk-amd64"), null));
+        assertEquals(8, getMajorVersion(Paths.get("/usr/lib/jvm/java-1.8.0-openjdk"), null));
+        assertEquals(8, getMajorVersion(Paths.get("/usr/java/jdk1.8.0_392"), null));
+        assertEquals(17, getMajorVersion(Paths.get("/opt/graalvm-ce-22.3.0-java17"), null));
+        assertEquals(
+                21,
+                getMajorVersion(Paths.get("/Library/Java/JavaVirtualMachines/temurin-21.jdk/Contents/Home"), null));
+        assertEquals(17, getMajorVersion(Paths.get("/opt/jdk"), "JAVA_HOME,JAVA17_HOME"));
+        assertEquals(0, getMajorVersion(Paths.get("/usr/lib/jvm/default-java"), null));
+    }
+
+    @Test
+    void testPlausible() {
+        assertTrue(isPlausible(17, "[17,18)"));
+        assertTrue(isPlausible(17, "[1.8,)"));
+        assertTrue(isPlausible(17, "17.0.9"));
+        assertTrue(isPlausible(8, "[1.8,9)"));
+        assertTrue(isPlausible(0, "[21,)"));
+        assertFalse(isPlausible(11, "[17,)"));
+        assertFalse(isPlausible(21, "[11,17)"));
+        assertFalse(isPlausible(8, "11"));
+    }
+}
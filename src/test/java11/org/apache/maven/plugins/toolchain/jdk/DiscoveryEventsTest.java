@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.plugins.toolchain.jdk;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DiscoveryEventsTest {
+
+    @Test
+    void testNotRecorded() {
+        assertNull(DiscoveryEvents.beginProbe());
+        assertNull(DiscoveryEvents.beginSelection());
+    }
+
+    @Test
+    void testRecorded(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("discovery.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.apache.maven.toolchains.Probe");
+            recording.enable("org.apache.maven.toolchains.Selection");
+            recording.disable("org.apache.maven.toolchains.CacheLoad");
+            recording.start();
+            DiscoveryEvents.endProbe(DiscoveryEvents.beginProbe(), Paths.get("jdk-17"), "valid");
+            DiscoveryEvents.endSelection(DiscoveryEvents.beginSelection(), "{version=17}", "none", null);
+            // disabled
+            assertNull(DiscoveryEvents.beginCacheLoad());
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().startsWith("org.apache.maven.toolchains."))
+                .collect(Collectors.toList());
+        assertEquals(2, events.size(), events.toString());
+        assertEquals("org.apache.maven.toolchains.Probe", events.get(0).getEventType().getName());
+        assertEquals("jdk-17", events.get(0).getString("jdk"));
+        assertEquals("valid", events.get(0).getString("outcome"));
+        assertEquals("org.apache.maven.toolchains.Selection", events.get(1).getEventType().getName());
+        assertEquals("none", events.get(1).getString("source"));
+        assertNull(events.get(1).getString("jdk"));
+    }
+}